@@ -51,7 +51,13 @@ start_server() {
     echo -e "${YELLOW}🚀 Iniciando o servidor...${NC}"
     echo -e "${YELLOW}═══════════════════════════════════════════════════════════${NC}"
     
-    java -cp target/classes org.Server.Server
+    # Os dias fechados em memória ficam em buffers diretos: a memória direta tem
+    # de ser pelo menos o dobro do orçamento pedido pelo servidor (os dias
+    # despejados só a libertam quando o GC corre).
+    # --add-modules ativa os kernels vetoriais (Vector API); sem ele o servidor
+    # usa os kernels escalares (o kernel em uso aparece no arranque)
+    java -XX:MaxDirectMemorySize="${MAX_DIRECT_MEMORY:-1g}" --add-modules jdk.incubator.vector \
+        -cp target/classes org.Server.Server
 }
 
 # Função para iniciar o cliente
@@ -0,0 +1,107 @@
+package org.Server;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark das agregações por dia do ServerSkeleton (quantidade, volume e
+ * preço unitário máximo de um produto num dia).
+ *
+ * Compara o ciclo venda a venda sobre ProductSales (o cálculo antigo do
+ * ServerSkeleton) com os kernels escalares e vetoriais, sobre uma coluna no
+ * heap e sobre o mesmo dia off-heap (copiado em bloco para arrays de trabalho).
+ *
+ * Execução:
+ * mvn -Pjmh compile exec:exec -Dexec.executable=java -Dexec.args="-cp %classpath org.openjdk.jmh.Main AggregationBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class AggregationBenchmark {
+
+    private static final int PRODUCT = 1;
+
+    @Param({ "1000", "100000" })
+    private int salesPerDay;
+
+    private SalesColumn column;
+    private ProductSales offHeap;
+    private final ScalarKernels scalar = new ScalarKernels();
+    private final VectorKernels vector = new VectorKernels();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        DaySales day = new DaySales();
+        for (int i = 0; i < salesPerDay; i++) {
+            int quantity = 1 + random.nextInt(10);
+            day.add(PRODUCT, quantity, quantity * (1 + random.nextInt(1000)) / 10.0);
+        }
+        column = day.get(PRODUCT);
+        offHeap = new OffHeapDay(day).get(PRODUCT);
+    }
+
+    /**
+     * As três agregações venda a venda, como o ServerSkeleton fazia.
+     */
+    private static double perSale(ProductSales sales) {
+        long quantity = 0;
+        double volume = 0.0;
+        double maxPrice = 0.0;
+        for (int i = 0, n = sales.size(); i < n; i++) {
+            quantity += sales.quantity(i);
+            volume += sales.price(i);
+        }
+        for (int i = 0, n = sales.size(); i < n; i++) {
+            double unitPrice = sales.price(i) / sales.quantity(i);
+            if (unitPrice > maxPrice) {
+                maxPrice = unitPrice;
+            }
+        }
+        return quantity + volume + maxPrice;
+    }
+
+    private static double kernels(AggregationKernels k, int[] q, double[] p, int n) {
+        return k.sumQuantity(q, n) + k.sumVolume(p, n) + k.maxUnitPrice(q, p, n);
+    }
+
+    @Benchmark
+    public double heapPerSale() {
+        return perSale(column);
+    }
+
+    @Benchmark
+    public double heapScalar() {
+        return kernels(scalar, column.quantities(), column.prices(), column.size());
+    }
+
+    @Benchmark
+    public double heapVector() {
+        return kernels(vector, column.quantities(), column.prices(), column.size());
+    }
+
+    @Benchmark
+    public double offHeapPerSale() {
+        return perSale(offHeap);
+    }
+
+    @Benchmark
+    public double offHeapKernels() {
+        return Kernels.quantity(offHeap) + Kernels.volume(offHeap) + Kernels.maxUnitPrice(offHeap);
+    }
+}
@@ -0,0 +1,131 @@
+package org.Server;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.Common.SalesSummary;
+
+/**
+ * Taxa de acertos da Cache (W-TinyLFU) comparada com a LRU anterior
+ * (LinkedHashMap com accessOrder) em traces enviesados de consultas
+ * (dia, produto), com o padrão cache-aside do ServerSkeleton: get e, se
+ * falhar, put.
+ *
+ * Traces:
+ *  - zipf: popularidade Zipf(s) sobre DAYS x PRODUCTS chaves;
+ *  - zipf+scan: o mesmo, intercalado com consultas de 365 dias a produtos
+ *    aleatórios (cada uma lê 365 chaves uma única vez).
+ *
+ * Não é um benchmark JMH (mede acertos, não tempo); corre com:
+ * mvn -Pjmh compile exec:exec -Dexec.executable=java -Dexec.args="-cp %classpath org.Server.CacheHitRatioBenchmark"
+ */
+public class CacheHitRatioBenchmark {
+
+    private static final int DAYS = 365;
+    private static final int PRODUCTS = 500;
+    private static final int ACCESSES = 2_000_000;
+
+    /**
+     * A cache anterior, sem locks (o benchmark é sequencial).
+     */
+    private static class LruBaseline {
+        private final Map<Long, Integer> map;
+
+        LruBaseline(int capacity) {
+            this.map = new LinkedHashMap<>(capacity, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        boolean access(int day, int productId) {
+            long key = ((long) day << 32) | productId;
+            if (map.get(key) != null) {
+                return true;
+            }
+            map.put(key, 1);
+            return false;
+        }
+    }
+
+    private static boolean access(Cache cache, int day, int productId) {
+        if (cache.get(day, productId) != null) {
+            return true;
+        }
+        cache.put(day, productId, SalesSummary.EMPTY);
+        return false;
+    }
+
+    /**
+     * Trace de chaves (dia * PRODUCTS + produto) com popularidade Zipf,
+     * com a ordem de popularidade baralhada.
+     */
+    private static int[] zipfTrace(double skew, boolean scans, long seed) {
+        int keys = DAYS * PRODUCTS;
+        double[] cdf = new double[keys];
+        double sum = 0.0;
+        for (int rank = 0; rank < keys; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cdf[rank] = sum;
+        }
+
+        Random random = new Random(seed);
+        int[] permutation = new int[keys];
+        for (int i = 0; i < keys; i++) {
+            permutation[i] = i;
+        }
+        for (int i = keys - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = t;
+        }
+
+        int[] trace = new int[ACCESSES];
+        int i = 0;
+        while (i < ACCESSES) {
+            if (scans && random.nextInt(1000) == 0) {
+                // Consulta longa: todos os dias de um produto, uma vez cada
+                int product = random.nextInt(PRODUCTS);
+                for (int day = 0; day < DAYS && i < ACCESSES; day++) {
+                    trace[i++] = day * PRODUCTS + product;
+                }
+                continue;
+            }
+            int rank = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            trace[i++] = permutation[rank >= 0 ? rank : -rank - 1];
+        }
+        return trace;
+    }
+
+    private static void run(String name, int[] trace, int capacity) {
+        LruBaseline lru = new LruBaseline(capacity);
+        Cache cache = new Cache(capacity);
+        long lruHits = 0, cacheHits = 0;
+        for (int key : trace) {
+            int day = key / PRODUCTS;
+            int product = key % PRODUCTS;
+            if (lru.access(day, product)) {
+                lruHits++;
+            }
+            if (access(cache, day, product)) {
+                cacheHits++;
+            }
+        }
+        System.out.printf("%-14s capacity=%-6d LRU=%6.2f%%  W-TinyLFU=%6.2f%%%n", name, capacity,
+                100.0 * lruHits / trace.length, 100.0 * cacheHits / trace.length);
+    }
+
+    public static void main(String[] args) {
+        for (int capacity : new int[] { 1_000, 10_000 }) {
+            run("zipf 0.8", zipfTrace(0.8, false, 1), capacity);
+            run("zipf 1.0", zipfTrace(1.0, false, 2), capacity);
+            run("zipf 0.8+scan", zipfTrace(0.8, true, 3), capacity);
+            run("zipf 1.0+scan", zipfTrace(1.0, true, 4), capacity);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.Server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark de ingestão de vendas no dia em curso.
+ *
+ * Compara o buffer com lock por produto (StripedSalesBuffer) com o buffer
+ * por thread (ThreadLocalSalesBuffer), usando a mesma barreira de fim de dia
+ * da ServerDatabase. O tempo medido inclui o fecho do dia (snapshot/fusão
+ * das vendas e dos totais).
+ *
+ * Não é um benchmark JMH (cada ronda é um dia completo); corre com:
+ * mvn -Pjmh compile exec:exec -Dexec.executable=java -Dexec.args="-cp %classpath org.Server.IngestionBenchmark 8 1000000 50"
+ */
+public class IngestionBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        int numThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int salesPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int numProducts = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        System.out.println("=== Benchmark de Ingestão ===");
+        System.out.println("Threads: " + numThreads + ", vendas/thread: " + salesPerThread
+                + ", produtos: " + numProducts);
+
+        run("Lock por produto", StripedSalesBuffer::new, numThreads, salesPerThread, numProducts);
+        run("Buffer por thread", ThreadLocalSalesBuffer::new, numThreads, salesPerThread, numProducts);
+    }
+
+    private static void run(String name, Supplier<SalesBuffer> factory,
+                            int numThreads, int salesPerThread, int numProducts) throws InterruptedException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(factory.get(), numThreads, salesPerThread, numProducts);
+        }
+
+        long totalNanos = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            totalNanos += round(factory.get(), numThreads, salesPerThread, numProducts);
+        }
+
+        double avgMillis = totalNanos / (MEASURED_ROUNDS * 1_000_000.0);
+        double throughput = (double) numThreads * salesPerThread / (avgMillis / 1000.0);
+        System.out.printf("%-20s %10.1f ms/dia %15.0f vendas/s%n", name, avgMillis, throughput);
+    }
+
+    /**
+     * Simula um dia: todas as threads registam vendas e no fim o dia é fechado.
+     *
+     * @return Duração do dia em nanossegundos
+     */
+    private static long round(SalesBuffer buffer, int numThreads, int salesPerThread, int numProducts)
+            throws InterruptedException {
+        ReentrantReadWriteLock dayBarrier = new ReentrantReadWriteLock();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numThreads);
+
+        for (int t = 0; t < numThreads; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < salesPerThread; i++) {
+                        dayBarrier.readLock().lock();
+                        try {
+                            buffer.add(random.nextInt(numProducts), 1 + random.nextInt(10), 10.0);
+                        } finally {
+                            dayBarrier.readLock().unlock();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+
+        dayBarrier.writeLock().lock();
+        try {
+            buffer.snapshot();
+            buffer.toDaySummary();
+        } finally {
+            dayBarrier.writeLock().unlock();
+        }
+        return System.nanoTime() - begin;
+    }
+}
@@ -1,15 +1,18 @@
 package org.Client;
 
-import org.Common.IAmazUM;
-
 /**
  * The Client class serves as the entry point for the client-side application.
  * Initializes the Client UI.
  */
 public class Client {
+
+    // Tempo máximo (ms) de espera por cada pedido; o servidor descarta-o se expirar na fila
+    private static final int REQUEST_TIMEOUT_MS = 30_000;
+
     public static void main(String[] args) {
         try {
-            IAmazUM client = new ClientStub("localhost", 12345);
+            ClientStub client = new ClientStub("localhost", 12345);
+            client.setRequestTimeout(REQUEST_TIMEOUT_MS);
             ClientUI ui = new ClientUI(client);
             ui.start();
         } catch (Exception e) {
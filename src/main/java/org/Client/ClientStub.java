@@ -6,13 +6,13 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
-import java.util.HashMap;
+import java.net.SocketTimeoutException;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.Common.FilteredEvents;
 import org.Common.IAmazUM;
+import org.Common.SalesSummary;
 import org.Utils.Demultiplexer;
 import org.Utils.RequestType;
 import org.Utils.TaggedConnection;
@@ -24,18 +24,21 @@ import org.Utils.TaggedConnection;
  */
 public class ClientStub implements IAmazUM, AutoCloseable {
 
-    /* Stores the personal dictionary used to map product ids into strings */
-    private final Map<Integer, String> productDictionary = new HashMap<>();
-    /* Ensures thread-safe updates from the personal dictionary */
-    private final ReentrantLock dictLock = new ReentrantLock();
+    /* Personal dictionary used to map product ids into strings, saved per user */
+    private final PersonalDictionary dictionary = new PersonalDictionary();
+    /* Identifies the server the personal dictionary belongs to */
+    private final String server;
     /* Handles message multiplexing/demultiplexing */
     private final Demultiplexer demultiplexer;
     /* Ensures thread-safe operations */
     private final ReentrantLock lock = new ReentrantLock();
     /* Unique identifier for each request */
     private int tag = 0;
+    /* Time budget (ms) sent with each request, 0 means no deadline */
+    private volatile int requestTimeout = 0;
 
     public ClientStub(String host, int port) throws IOException {
+        this.server = host + "_" + port;
         Socket socket = new Socket(host, port);
         TaggedConnection taggedConnection = new TaggedConnection(socket); 
         
@@ -62,33 +65,54 @@ public class ClientStub implements IAmazUM, AutoCloseable {
         System.out.println("Connected to the server: " + host + ":" + port);
     }
 
+    /**
+     * Sets the default time budget for each subsequent request.
+     * The budget travels with the request so the server can drop it once
+     * expired, and the client stops waiting for it after the same amount of time.
+     * The aggregate queries and filterEvents also take a budget per call.
+     * Notifications and shutdown never use it (they wait as long as needed).
+     *
+     * @param millis The timeout in milliseconds (0 disables it).
+     */
+    public void setRequestTimeout(int millis) {
+        this.requestTimeout = Math.max(0, millis);
+    }
+
     /**
      * Sends a request with a specific tag and waits for a response.
      *
      * @param requestType The type of the request.
      * @param requestData The request data.
+     * @param timeout The time budget of this call in milliseconds (0 = wait forever).
      * 
      * @return The response data.
      * 
      * @throws IOException if there is an issue sending the request or receiving the response.
+     * @throws SocketTimeoutException if the deadline expires, either locally or on the server.
      */
-    private byte[] sendWithTag(short requestType, byte[] requestData) throws IOException {
+    private byte[] sendWithTag(short requestType, byte[] requestData, int timeout) throws IOException {
         int newTag;
 
         lock.lock();
         try {
             newTag = this.tag++;
-            demultiplexer.send(newTag, requestType, requestData); 
+            demultiplexer.send(newTag, requestType, timeout, requestData); 
         } finally {
             lock.unlock();
         }
 
+        TaggedConnection.Frame response;
         try {
-            return demultiplexer.receive(newTag);
+            response = demultiplexer.receiveFrame(newTag, timeout);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IOException("Interrupted while waiting for response", e);
         }
+
+        if (response.requestType == RequestType.Timeout.getValue()) {
+            throw new SocketTimeoutException("Request deadline expired on the server");
+        }
+        return response.data;
     }
 
     /**
@@ -98,13 +122,18 @@ public class ClientStub implements IAmazUM, AutoCloseable {
      *
      * @param requestType The type of the request.
      * @param requestData The request data.
+     * @param timeout The time budget of this call in milliseconds (0 = wait forever).
      * 
      * @return A DataInputStream to read the response.
      * 
      * @throws IOException if there is an issue sending the request or receiving the response.
      */
     private DataInputStream sendRequest(short requestType, byte[] requestData) throws IOException {
-        byte[] responseData = sendWithTag(requestType, requestData);
+        return sendRequest(requestType, requestData, requestTimeout);
+    }
+
+    private DataInputStream sendRequest(short requestType, byte[] requestData, int timeout) throws IOException {
+        byte[] responseData = sendWithTag(requestType, requestData, timeout);
         return new DataInputStream(new ByteArrayInputStream(responseData));
     }
     
@@ -129,7 +158,11 @@ public class ClientStub implements IAmazUM, AutoCloseable {
         }
         System.out.println("Sending authentication request");
         try (DataInputStream dis = sendRequest(RequestType.Login.getValue(), requestData)) {
-            return dis.readBoolean();
+            boolean authenticated = dis.readBoolean();
+            if (authenticated) {
+                dictionary.open(server, username);
+            }
+            return authenticated;
         }
     }
 
@@ -153,7 +186,11 @@ public class ClientStub implements IAmazUM, AutoCloseable {
             requestData = baos.toByteArray();
         }
         try (DataInputStream dis = sendRequest(RequestType.Register.getValue(), requestData)) {
-            return dis.readBoolean();
+            boolean registered = dis.readBoolean();
+            if (registered) {
+                dictionary.open(server, username);
+            }
+            return registered;
         }
     }
 
@@ -176,7 +213,7 @@ public class ClientStub implements IAmazUM, AutoCloseable {
     public void disconnect() throws IOException {
         byte[] disconnect = new byte[0];
         
-        try (DataInputStream dis = sendRequest(RequestType.Disconnect.getValue(), disconnect)) {
+        try (DataInputStream dis = sendRequest(RequestType.Disconnect.getValue(), disconnect, 0)) {
             String message = dis.readUTF();
             System.out.println("Server response: " + message);
         } catch (IOException e) {
@@ -206,6 +243,15 @@ public class ClientStub implements IAmazUM, AutoCloseable {
      */
     @Override
     public double getSalesAveragePrice(String productName, int days) throws IOException {
+        return getSalesAveragePrice(productName, days, requestTimeout);
+    }
+
+    /**
+     * Same as {@link #getSalesAveragePrice(String, int)}, with a time budget for this call only.
+     *
+     * @param timeoutMillis The timeout in milliseconds (0 = wait forever).
+     */
+    public double getSalesAveragePrice(String productName, int days, int timeoutMillis) throws IOException {
         byte[] requestData;
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
             DataOutputStream dos = new DataOutputStream(baos)) {
@@ -214,7 +260,7 @@ public class ClientStub implements IAmazUM, AutoCloseable {
             requestData = baos.toByteArray();
         }
         
-        try (DataInputStream dis = sendRequest(RequestType.SalesAveragePrice.getValue(), requestData)) {
+        try (DataInputStream dis = sendRequest(RequestType.SalesAveragePrice.getValue(), requestData, timeoutMillis)) {
             return dis.readDouble();
         }
     }
@@ -229,6 +275,15 @@ public class ClientStub implements IAmazUM, AutoCloseable {
      */
     @Override
     public int getSalesQuantity(String productName, int days) throws IOException {
+        return getSalesQuantity(productName, days, requestTimeout);
+    }
+
+    /**
+     * Same as {@link #getSalesQuantity(String, int)}, with a time budget for this call only.
+     *
+     * @param timeoutMillis The timeout in milliseconds (0 = wait forever).
+     */
+    public int getSalesQuantity(String productName, int days, int timeoutMillis) throws IOException {
         byte[] requestData;
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
             DataOutputStream dos = new DataOutputStream(baos)) {
@@ -237,7 +292,7 @@ public class ClientStub implements IAmazUM, AutoCloseable {
             requestData = baos.toByteArray();
         }
         
-        try (DataInputStream dis = sendRequest(RequestType.SalesQuantity.getValue(), requestData)) {
+        try (DataInputStream dis = sendRequest(RequestType.SalesQuantity.getValue(), requestData, timeoutMillis)) {
             return dis.readInt();
         }
     }
@@ -252,6 +307,15 @@ public class ClientStub implements IAmazUM, AutoCloseable {
      */
     @Override
     public double getSalesVolume(String productName, int days) throws IOException {
+        return getSalesVolume(productName, days, requestTimeout);
+    }
+
+    /**
+     * Same as {@link #getSalesVolume(String, int)}, with a time budget for this call only.
+     *
+     * @param timeoutMillis The timeout in milliseconds (0 = wait forever).
+     */
+    public double getSalesVolume(String productName, int days, int timeoutMillis) throws IOException {
         byte[] requestData;
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
             DataOutputStream dos = new DataOutputStream(baos)) {
@@ -260,7 +324,7 @@ public class ClientStub implements IAmazUM, AutoCloseable {
             requestData = baos.toByteArray();
         }
         
-        try (DataInputStream dis = sendRequest(RequestType.SalesVolume.getValue(), requestData)) {
+        try (DataInputStream dis = sendRequest(RequestType.SalesVolume.getValue(), requestData, timeoutMillis)) {
             return dis.readDouble();
         }
     }
@@ -275,6 +339,15 @@ public class ClientStub implements IAmazUM, AutoCloseable {
      */
     @Override
     public double getSalesMaxPrice(String productName, int days) throws IOException {
+        return getSalesMaxPrice(productName, days, requestTimeout);
+    }
+
+    /**
+     * Same as {@link #getSalesMaxPrice(String, int)}, with a time budget for this call only.
+     *
+     * @param timeoutMillis The timeout in milliseconds (0 = wait forever).
+     */
+    public double getSalesMaxPrice(String productName, int days, int timeoutMillis) throws IOException {
         byte[] requestData;
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
             DataOutputStream dos = new DataOutputStream(baos)) {
@@ -283,11 +356,46 @@ public class ClientStub implements IAmazUM, AutoCloseable {
             requestData = baos.toByteArray();
         }
         
-        try (DataInputStream dis = sendRequest(RequestType.SalesMaxPrice.getValue(), requestData)) {
+        try (DataInputStream dis = sendRequest(RequestType.SalesMaxPrice.getValue(), requestData, timeoutMillis)) {
             return dis.readDouble();
         }
     }
 
+    /**
+     * Gets the running totals of a product for the current (not yet ended) day.
+     *
+     * @param productName The name of the product.
+     * @return Count, quantity, volume and max unit price of today's sales so far.
+     * @throws IOException if there is an issue during the request.
+     */
+    @Override
+    public SalesSummary getTodaySummary(String productName) throws IOException {
+        byte[] requestData;
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(baos)) {
+            dos.writeUTF(productName);
+            requestData = baos.toByteArray();
+        }
+
+        try (DataInputStream dis = sendRequest(RequestType.TodaySummary.getValue(), requestData)) {
+            return SalesSummary.deserialize(dis);
+        }
+    }
+
+    /**
+     * Requests the server's cache and storage metrics.
+     *
+     * @return The metrics report.
+     * @throws IOException if there is an issue during the request.
+     */
+    @Override
+    public String getMetrics() throws IOException {
+        byte[] requestData = new byte[0];
+        try (DataInputStream dis = sendRequest(RequestType.Metrics.getValue(), requestData)) {
+            return dis.readUTF();
+        }
+    }
+
     /**
      * Sends a shutdown request to the server.
      * This will save all data and terminate the server.
@@ -298,7 +406,7 @@ public class ClientStub implements IAmazUM, AutoCloseable {
     @Override
     public String shutdown() throws IOException {
         byte[] requestData = new byte[0];
-        try (DataInputStream dis = sendRequest(RequestType.Shutdown.getValue(), requestData)) {
+        try (DataInputStream dis = sendRequest(RequestType.Shutdown.getValue(), requestData, 0)) {
             return dis.readUTF();
         }
     }
@@ -313,7 +421,7 @@ public class ClientStub implements IAmazUM, AutoCloseable {
             dos.writeUTF(p2);
             dos.flush();
             
-            try (DataInputStream dis = sendRequest(RequestType.SimultaneousSales.getValue(), baos.toByteArray())) {
+            try (DataInputStream dis = sendRequest(RequestType.SimultaneousSales.getValue(), baos.toByteArray(), 0)) {
                 return dis.readBoolean();
             }
         }
@@ -327,7 +435,7 @@ public class ClientStub implements IAmazUM, AutoCloseable {
             dos.writeInt(n);
             dos.flush();
             
-            try (DataInputStream dis = sendRequest(RequestType.ConsecutiveSales.getValue(), baos.toByteArray())) {
+            try (DataInputStream dis = sendRequest(RequestType.ConsecutiveSales.getValue(), baos.toByteArray(), 0)) {
                 boolean hasResult = dis.readBoolean();
                 if (hasResult) {
                     return dis.readUTF();
@@ -353,16 +461,12 @@ public class ClientStub implements IAmazUM, AutoCloseable {
      */
     @Override
     public String getProductName(int productId) {
-        dictLock.lock();
-        try {
-            return productDictionary.get(productId);
-        } finally {
-            dictLock.unlock();
-        }
+        return dictionary.get(productId);
     }
 
     @Override
-    public FilteredEvents filterEvents(String username, List<String> products, int days) throws IOException {
+    public FilteredEvents filterEvents(String username, List<String> products, int days,
+                                       int knownCount, long knownDigest) throws IOException {
         // Client stub does not need the username when sending the request to
         // the server; delegate to the existing implementation so the class
         // satisfies the updated IAmazUM interface.
@@ -381,6 +485,15 @@ public class ClientStub implements IAmazUM, AutoCloseable {
      */
     @Override
     public FilteredEvents filterEvents(List<String> products, int days) throws IOException {
+        return filterEvents(products, days, requestTimeout);
+    }
+
+    /**
+     * Same as {@link #filterEvents(List, int)}, with a time budget for this call only.
+     *
+     * @param timeoutMillis The timeout in milliseconds (0 = wait forever).
+     */
+    public FilteredEvents filterEvents(List<String> products, int days, int timeoutMillis) throws IOException {
         byte[] requestData;
 
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -391,22 +504,17 @@ public class ClientStub implements IAmazUM, AutoCloseable {
                 dos.writeUTF(p);
 
             dos.writeInt(days);
+
+            // What we already know, so the server only sends the missing names
+            dictionary.writeKnown(dos);
             requestData = baos.toByteArray();
         }
 
-        try (DataInputStream dis = sendRequest(RequestType.FilterEvents.getValue(), requestData)) {
+        try (DataInputStream dis = sendRequest(RequestType.FilterEvents.getValue(), requestData, timeoutMillis)) {
             FilteredEvents fe = FilteredEvents.deserialize(dis);
 
-            // Update personal dictionary
-            Map<Integer, String> dictUpdate = fe.getDictionaryUpdate();
-            if (dictUpdate != null && !dictUpdate.isEmpty()) {
-                dictLock.lock();
-                try {
-                    productDictionary.putAll(dictUpdate);
-                } finally {
-                    dictLock.unlock();
-                }
-            }
+            // Update personal dictionary (replaced if the server did not recognise it)
+            dictionary.apply(fe.isDictionaryReset(), fe.getDictionaryUpdate());
 
             return fe;
         }
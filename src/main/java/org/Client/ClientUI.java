@@ -13,6 +13,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.Common.FilteredEvents;
 import org.Common.IAmazUM;
 import org.Common.NetworkException;
+import org.Common.SalesSummary;
 
 public class ClientUI {
     
@@ -21,6 +22,8 @@ public class ClientUI {
     private static final String ERROR_PREFIX = "[ERRO] ";
     private static final String INFO_PREFIX = "[INFO] ";
     private static final String RESPONSE_PREFIX = "[Response] ";
+    // Número de opções do menu de operações (a última é sair)
+    private static final int MENU_OPERATIONS = 13;
 
     public ClientUI(IAmazUM client) {
         this.client = client;
@@ -321,6 +324,25 @@ public class ClientUI {
         t.start();
     }
 
+    /**
+     * Handles the server metrics request.
+     */
+    private static void handleMetrics(IAmazUM client, List<Thread> threads) {
+        Thread t = new Thread(() -> {
+            try {
+                String report = client.getMetrics();
+                printSafe(RESPONSE_PREFIX + "\n" + report);
+            } catch (IOException e) {
+                handleNetworkError(e);
+            } catch (Exception e) {
+                printError("Unexpected error getting server metrics: " + e.getMessage());
+            }
+        });
+
+        threads.add(t);
+        t.start();
+    }
+
     /**
      * Handles the wait for simultaneous sales notification.
      */
@@ -410,6 +432,40 @@ public class ClientUI {
         }
     }
 
+    /**
+     * Handles the today's running totals query in a separate thread.
+     */
+    private static void handleTodaySummary(IAmazUM client, Scanner scanner, List<Thread> threads) {
+        try {
+            printSafe("Enter product name:");
+            String productName = scanner.nextLine().trim();
+
+            if (productName.isEmpty()) {
+                printError("Product name cannot be empty.");
+                return;
+            }
+
+            Thread t = new Thread(() -> {
+                try {
+                    SalesSummary today = client.getTodaySummary(productName);
+                    printSafe(RESPONSE_PREFIX + "Today so far for '" + productName + "': "
+                            + today.count() + " sales, " + today.quantity() + " units, volume "
+                            + String.format("%.2f", today.volume()) + ", max unit price "
+                            + String.format("%.2f", today.maxPrice()));
+                } catch (IOException e) {
+                    handleNetworkError(e);
+                } catch (Exception e) {
+                    printError("Unexpected error getting today's totals: " + e.getMessage());
+                }
+            });
+
+            threads.add(t);
+            t.start();
+        } catch (Exception e) {
+            printError("Error preparing today's totals query: " + e.getMessage());
+        }
+    }
+
     /**
      * Handles the filter events in a separated thread.
      */
@@ -434,7 +490,7 @@ public class ClientUI {
 
             final List<String> products = productsInput;
 
-            int days = getDaysInput(scanner);
+            int days = getDaysInput(scanner, 0);
 
         Thread t = new Thread(() -> {
             try {
@@ -494,14 +550,25 @@ public class ClientUI {
      * Helper method to get days input with validation.
      */
     private static int getDaysInput(Scanner scanner) {
+        return getDaysInput(scanner, 1);
+    }
+
+    /**
+     * Helper method to get days input with validation.
+     * 
+     * @param minDays The smallest accepted value (0 means today so far)
+     */
+    private static int getDaysInput(Scanner scanner, int minDays) {
         int days = 0;
         while (true) {
-            printSafe("Enter number of days to aggregate:");
+            printSafe(minDays == 0
+                    ? "Enter number of days to aggregate (0 = today so far):"
+                    : "Enter number of days to aggregate:");
             String daysInput = scanner.nextLine();
             try {
                 days = Integer.parseInt(daysInput.trim());
-                if (days < 1) {
-                    printSafe("Number of days must be at least 1.");
+                if (days < minDays) {
+                    printSafe("Number of days must be at least " + minDays + ".");
                     continue;
                 }
                 break;
@@ -616,21 +683,23 @@ public class ClientUI {
                             "8.  Monitor Simultaneous Sales - Alert when 2 products sell together\n" +
                             "9.  Monitor Consecutive Sales - Alert when N sales happen in a row\n" +
                             "10. Filter Events (Time Series)\n" +
-                            "11. Exit Application\n" +
+                            "11. Today So Far - Live totals for a product\n" +
+                            "12. Server Metrics - Cache and storage hit rates (admin)\n" +
+                            "13. Exit Application\n" +
                             "=============================================\n" +
-                            "Select operation (1-11): ";
+                            "Select operation (1-" + MENU_OPERATIONS + "): ";
                             printSafe(menu);
                         
                         try {
                             operation = scanner.nextInt();
                             scanner.nextLine();
-                            if (operation >= 1 && operation <= 11) {
+                            if (operation >= 1 && operation <= MENU_OPERATIONS) {
                                 validChoice = true;
                             } else {
-                                printSafe("Invalid operation! Please choose between 1 and 10.");
+                                printSafe("Invalid operation! Please choose between 1 and " + MENU_OPERATIONS + ".");
                             }
                         } catch (InputMismatchException e) {
-                            printSafe("Invalid input! Please enter a number between 1 and 10.");
+                            printSafe("Invalid input! Please enter a number between 1 and " + MENU_OPERATIONS + ".");
                             scanner.nextLine();
                         }
                     }
@@ -684,6 +753,12 @@ public class ClientUI {
                             handleFilterEvents(client, scanner, threads);
                             break;
                         case 11:
+                            handleTodaySummary(client, scanner, threads);
+                            break;
+                        case 12:
+                            handleMetrics(client, threads);
+                            break;
+                        case 13:
                             running = false;
                             printSafe("\nWaiting for pending operations to complete...");
                             for (Thread t : threads) {
@@ -0,0 +1,187 @@
+package org.Client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.Common.DictionaryDigest;
+
+/**
+ * Dicionário pessoal do cliente (id de produto -> nome), recebido aos poucos
+ * nas respostas do FilterEvents.
+ *
+ * Depois do login é guardado em disco por servidor e utilizador, pelo que
+ * sobrevive ao fecho do cliente: ao voltar a ligar-se, o cliente envia a
+ * contagem e o resumo (DictionaryDigest) do que já conhece e o servidor
+ * retoma o conjunto correspondente sem reenviar nomes. Se o servidor já não o
+ * tiver (reiniciado, estado esquecido), a resposta pede para recomeçar e o
+ * dicionário é substituído pelos nomes que vierem com ela.
+ *
+ * Formato do ficheiro: int número de entradas, e por entrada int id, UTF nome.
+ */
+class PersonalDictionary {
+
+    private static final String DICTIONARY_DIR = "client_data/";
+
+    private final Map<Integer, String> names = new HashMap<>();
+    private long digest = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Ficheiro do utilizador autenticado (null = só em memória)
+    private Path file;
+    // Ordena as gravações: a última gravada é sempre o estado mais recente
+    private final ReentrantLock saveLock = new ReentrantLock();
+
+    /**
+     * Passa a usar o dicionário guardado de um utilizador, substituindo o atual.
+     *
+     * @param server Identificação do servidor (host e porta)
+     * @param username O utilizador autenticado
+     */
+    void open(String server, String username) {
+        String name = URLEncoder.encode(server + "_" + username, StandardCharsets.UTF_8) + ".dict";
+        Path path = Path.of(DICTIONARY_DIR, name);
+        Map<Integer, String> loaded = load(path);
+
+        lock.lock();
+        try {
+            file = path;
+            names.clear();
+            digest = 0;
+            for (Map.Entry<Integer, String> entry : loaded.entrySet()) {
+                names.put(entry.getKey(), entry.getValue());
+                digest += DictionaryDigest.mix(entry.getKey());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    String get(int productId) {
+        lock.lock();
+        try {
+            return names.get(productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Escreve o que o cliente conhece: int número de ids, long resumo.
+     */
+    void writeKnown(DataOutputStream dos) throws IOException {
+        int count;
+        long known;
+        lock.lock();
+        try {
+            count = names.size();
+            known = digest;
+        } finally {
+            lock.unlock();
+        }
+        dos.writeInt(count);
+        dos.writeLong(known);
+    }
+
+    /**
+     * Aplica a atualização de uma resposta e grava o dicionário se mudou.
+     *
+     * @param reset true para descartar o dicionário atual antes de aplicar
+     * @param update Nomes novos (pode ser null)
+     */
+    void apply(boolean reset, Map<Integer, String> update) {
+        boolean changed = false;
+        lock.lock();
+        try {
+            if (reset && !names.isEmpty()) {
+                names.clear();
+                digest = 0;
+                changed = true;
+            }
+            if (update != null) {
+                for (Map.Entry<Integer, String> entry : update.entrySet()) {
+                    if (names.put(entry.getKey(), entry.getValue()) == null) {
+                        digest += DictionaryDigest.mix(entry.getKey());
+                        changed = true;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    private static Map<Integer, String> load(Path path) {
+        Map<Integer, String> loaded = new HashMap<>();
+        File f = path.toFile();
+        if (!f.exists()) {
+            return loaded;
+        }
+        try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            int size = dis.readInt();
+            for (int i = 0; i < size; i++) {
+                int id = dis.readInt();
+                loaded.put(id, dis.readUTF());
+            }
+        } catch (IOException e) {
+            // Dicionário ilegível: começa vazio, o servidor volta a enviar os nomes
+            System.out.println("Could not read the saved product dictionary: " + e.getMessage());
+            loaded.clear();
+        }
+        return loaded;
+    }
+
+    /**
+     * Grava o dicionário num ficheiro temporário e substitui o anterior com um
+     * rename atómico, para nunca deixar um ficheiro a meio.
+     */
+    private void save() {
+        saveLock.lock();
+        try {
+            Map<Integer, String> snapshot;
+            Path target;
+            lock.lock();
+            try {
+                if (file == null) {
+                    return;
+                }
+                snapshot = new HashMap<>(names);
+                target = file;
+            } finally {
+                lock.unlock();
+            }
+
+            Files.createDirectories(target.getParent());
+            Path tmp = Path.of(target + ".tmp");
+            try (DataOutputStream dos = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp.toFile())))) {
+                dos.writeInt(snapshot.size());
+                for (Map.Entry<Integer, String> entry : snapshot.entrySet()) {
+                    dos.writeInt(entry.getKey());
+                    dos.writeUTF(entry.getValue());
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Could not save the product dictionary: " + e.getMessage());
+        } finally {
+            saveLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.Common;
+
+/**
+ * Resumo de um conjunto de ids de produtos, independente da ordem.
+ *
+ * O cliente envia com cada FilterEvents quantos ids conhece e o resumo desse
+ * conjunto; o servidor compara-os com o que julga que o cliente conhece e,
+ * se não baterem certo (servidor reiniciado, estado esquecido), volta a
+ * enviar os nomes e pede ao cliente para recomeçar o dicionário. Como o
+ * resumo é uma soma, pode ser mantido de forma incremental dos dois lados.
+ */
+public final class DictionaryDigest {
+
+    private DictionaryDigest() {
+    }
+
+    /**
+     * @return Contribuição de um id para o resumo (finalizador do SplitMix64)
+     */
+    public static long mix(int id) {
+        long z = (id + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
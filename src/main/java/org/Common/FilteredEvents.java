@@ -12,6 +12,8 @@ import java.util.Map;
  * Represents filtered sales events grouped by product.
  *
  * Format (binary):
+ * boolean dictionaryReset (the client must drop its dictionary before applying the update)
+ * boolean hasDictionaryUpdate
  * if true:
  *    int dictSize
  *    repeat dictSize:
@@ -30,6 +32,8 @@ public class FilteredEvents {
 
     /* Dictionary used to map a product id to its product name */
     private final Map<Integer, String> dictionaryUpdate;
+    /* True when the server did not recognise the client's dictionary and started a new one */
+    private final boolean dictionaryReset;
     /** Map containing for each product its list of events object, containing its quantity and price */
     private final Map<Integer, List<Event>> eventsByProduct;
 
@@ -44,14 +48,27 @@ public class FilteredEvents {
     }
 
     public FilteredEvents(Map<Integer, String> dictionaryUpdate, Map<Integer, List<Event>> eventsByProduct) {
+        this(dictionaryUpdate, false, eventsByProduct);
+    }
+
+    public FilteredEvents(Map<Integer, String> dictionaryUpdate, boolean dictionaryReset,
+                          Map<Integer, List<Event>> eventsByProduct) {
         this.eventsByProduct = eventsByProduct;
         this.dictionaryUpdate = dictionaryUpdate;
+        this.dictionaryReset = dictionaryReset;
     }
 
     public Map<Integer, String> getDictionaryUpdate() {
         return dictionaryUpdate;
     }
 
+    /**
+     * @return True if the client must replace its dictionary with the update instead of merging it.
+     */
+    public boolean isDictionaryReset() {
+        return dictionaryReset;
+    }
+
     public Map<Integer, List<Event>> getEventsByProduct() {
         return eventsByProduct;
     }
@@ -64,6 +81,7 @@ public class FilteredEvents {
     public void serialize(DataOutputStream out) throws IOException {
         
         // Serialize Dictionary
+        out.writeBoolean(dictionaryReset);
         if(dictionaryUpdate != null && !dictionaryUpdate.isEmpty()){
             out.writeBoolean(true);
             out.writeInt(dictionaryUpdate.size());
@@ -98,6 +116,7 @@ public class FilteredEvents {
         
         Map<Integer, String> dict = null;
 
+        boolean reset = in.readBoolean();
         boolean hasDict = in.readBoolean();
         if (hasDict) {
             int size = in.readInt();
@@ -126,6 +145,6 @@ public class FilteredEvents {
             events.put(product, list);
         }
 
-        return new FilteredEvents(dict, events);
+        return new FilteredEvents(dict, reset, events);
     }
 }
\ No newline at end of file
@@ -89,6 +89,16 @@ public interface IAmazUM {
      * @throws IOException se houver erro de comunicação
      */
     double getSalesMaxPrice(String productName, int days) throws IOException;
+
+    /**
+     * Obtém os totais de um produto no dia em curso (ainda não terminado):
+     * número de vendas, quantidade, volume e preço unitário máximo.
+     * 
+     * @param productName Nome do produto
+     * @return Resumo das vendas de hoje até ao momento
+     * @throws IOException se houver erro de comunicação
+     */
+    SalesSummary getTodaySummary(String productName) throws IOException;
     
     // ==================== Operações Administrativas ====================
     
@@ -108,6 +118,15 @@ public interface IAmazUM {
      */
     String shutdown() throws IOException;
 
+    /**
+     * Métricas da cache e do armazenamento do servidor (acertos/falhas por
+     * métrica, leituras de dias da memória e do disco, despejos, latências).
+     * 
+     * @return Relatório legível
+     * @throws IOException se houver erro de comunicação
+     */
+    String getMetrics() throws IOException;
+
     // ==================== Notificações de Ocorrências ====================
 
     /**
@@ -153,11 +172,14 @@ public interface IAmazUM {
      *
      * @param username Nome do cliente.
      * @param products Conjunto de produtos.
-     * @param daysAgo Número de dias a considerar.
+     * @param daysAgo Número de dias a considerar (0 = só o dia em curso, até agora).
+     * @param knownCount Número de produtos cujo nome o cliente já conhece.
+     * @param knownDigest Resumo (DictionaryDigest) dos produtos que o cliente já conhece.
      * @throws IOException Erro de rede.
      * @return Estrutura serializável compacta com os eventos.
      */
-    FilteredEvents filterEvents(String username, List<String> products, int days) throws IOException;
+    FilteredEvents filterEvents(String username, List<String> products, int days,
+                                int knownCount, long knownDigest) throws IOException;
 
     void disconnect() throws IOException;
 }
@@ -0,0 +1,46 @@
+package org.Common;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Resumo das vendas de um produto num período (um dia ou o dia em curso).
+ *
+ * Format (binary):
+ *     int count
+ *     int quantity
+ *     double volume
+ *     double maxPrice
+ *
+ * @param count Número de vendas
+ * @param quantity Quantidade total vendida
+ * @param volume Volume total de vendas (soma dos preços)
+ * @param maxPrice Preço unitário máximo
+ */
+public record SalesSummary(int count, int quantity, double volume, double maxPrice) {
+
+    public static final SalesSummary EMPTY = new SalesSummary(0, 0, 0.0, 0.0);
+
+    /**
+     * @return Preço médio por unidade, ou 0.0 se não houve vendas
+     */
+    public double averagePrice() {
+        return quantity == 0 ? 0.0 : volume / quantity;
+    }
+
+    public void serialize(DataOutputStream out) throws IOException {
+        out.writeInt(count);
+        out.writeInt(quantity);
+        out.writeDouble(volume);
+        out.writeDouble(maxPrice);
+    }
+
+    public static SalesSummary deserialize(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        int quantity = in.readInt();
+        double volume = in.readDouble();
+        double maxPrice = in.readDouble();
+        return new SalesSummary(count, quantity, volume, maxPrice);
+    }
+}
@@ -0,0 +1,26 @@
+package org.Server;
+
+/**
+ * Kernels de agregação sobre as colunas de vendas de um produto.
+ *
+ * Operam sobre as primeiras n posições dos arrays de quantidades e preços
+ * totais. Há uma implementação escalar (ScalarKernels) e uma vetorial
+ * (VectorKernels, Vector API); a usada em runtime é escolhida em Kernels.
+ */
+public interface AggregationKernels {
+
+    /**
+     * @return Soma das quantidades q[0..n)
+     */
+    long sumQuantity(int[] q, int n);
+
+    /**
+     * @return Soma dos preços totais p[0..n)
+     */
+    double sumVolume(double[] p, int n);
+
+    /**
+     * @return Máximo de p[i] / q[i] em [0, n), ou 0 se n == 0
+     */
+    double maxUnitPrice(int[] q, double[] p, int n);
+}
@@ -1,104 +1,405 @@
 package org.Server;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+import org.Common.SalesSummary;
 
 /*
- * LRU Cache usando LinkedHashMap com accessOrder=true.
- * O LinkedHashMap gere automaticamente a ordem de acesso (LRU) e a evição.
- * 
+ * Cache das agregações por (dia, produto), concorrente e com admissão W-TinyLFU.
+ *
+ * Cada entrada é o resumo completo do produto no dia (SalesSummary imutável:
+ * contagem, quantidade, volume e preço unitário máximo), calculado de uma vez
+ * numa falha; qualquer métrica é servida a partir da mesma entrada.
+ *
+ * As chaves são o dia e o id do produto empacotados num long, sem objetos de
+ * chave por consulta. A cache está dividida em segmentos, cada um com o seu
+ * lock, pelo que consultas a chaves de segmentos diferentes não se bloqueiam.
+ *
+ * Cada segmento é uma W-TinyLFU:
+ *  - uma janela LRU pequena (~1%) recebe todas as entradas novas;
+ *  - o resto é um LRU segmentado (probation + protected, 20% / 80%);
+ *  - quando uma entrada sai da janela só entra na zona principal se for mais
+ *    frequente (FrequencySketch) do que a vítima que iria substituir.
+ * Assim uma varrimento de muitos dias lidos uma única vez (ex.: consultas de
+ * 365 dias) não expulsa os produtos e dias consultados com frequência.
+ *
+ * Format (binary, serialize):
+ *     int count
+ *     count x { int day, int productId, byte frequency, SalesSummary }
+ * com as entradas mais quentes primeiro (protected, probation, janela; da
+ * mais recente para a mais antiga em cada fila).
  */
 public class Cache {
 
-    // Record gera equals() e hashCode() automaticamente - essencial para chaves de Map
-    public record CacheKey(int day, String product) {}
+    private static final byte WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    // Entrada da cache; pertence ao mesmo tempo a uma cadeia da tabela e a uma fila
+    private static final class Node {
+        final long key;
+        final long hash;
+        Node next;           // cadeia da tabela de dispersão
+        Node prev, after;    // fila de acesso (LRU)
+        byte queue;
+
+        SalesSummary summary;
+
+        Node(long key, long hash) {
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+
+    // Lista duplamente ligada intrusiva: cabeça = menos recente, cauda = mais recente
+    private static final class AccessQueue {
+        Node head, tail;
+        int size;
+
+        void add(Node node) {
+            node.prev = tail;
+            node.after = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.after = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node node) {
+            if (node.prev == null) {
+                head = node.after;
+            } else {
+                node.prev.after = node.after;
+            }
+            if (node.after == null) {
+                tail = node.prev;
+            } else {
+                node.after.prev = node.prev;
+            }
+            node.prev = node.after = null;
+            size--;
+        }
 
-    // Dados guardados para cada chave
-    private static class CacheData {
-        Integer quantidade;
-        Double volume;
-        Double maxPrice;
+        void moveToTail(Node node) {
+            if (node != tail) {
+                remove(node);
+                add(node);
+            }
+        }
     }
 
-    // Usar ReentrantLock em vez de ReentrantReadWriteLock porque 
-    // LinkedHashMap com accessOrder=true modifica o map em cada get()
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Map<CacheKey, CacheData> map;
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final LongAdder evictions;
+        final Node[] table;
+        final FrequencySketch sketch;
+        final AccessQueue window = new AccessQueue();
+        final AccessQueue probation = new AccessQueue();
+        final AccessQueue protectedQueue = new AccessQueue();
+        final int windowCapacity;
+        final int mainCapacity;
+        final int protectedCapacity;
+
+        Segment(int capacity, LongAdder evictions) {
+            this.evictions = evictions;
+            this.windowCapacity = Math.max(1, capacity / 100);
+            this.mainCapacity = Math.max(1, capacity - windowCapacity);
+            this.protectedCapacity = mainCapacity * 4 / 5;
+            this.table = new Node[Integer.highestOneBit(Math.max(2, capacity - 1) << 1)];
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        Node find(long key, long hash) {
+            for (Node n = table[index(hash)]; n != null; n = n.next) {
+                if (n.key == key) {
+                    return n;
+                }
+            }
+            return null;
+        }
+
+        int index(long hash) {
+            return (int) hash & (table.length - 1);
+        }
+
+        /**
+         * Consulta: regista o acesso e, se existir, promove a entrada.
+         */
+        Node get(long key, long hash) {
+            sketch.increment(hash);
+            Node node = find(key, hash);
+            if (node != null) {
+                onHit(node);
+            }
+            return node;
+        }
+
+        /**
+         * Devolve a entrada da chave, criando-a (na janela) se não existir.
+         */
+        Node getOrCreate(long key, long hash) {
+            Node node = find(key, hash);
+            if (node != null) {
+                return node;
+            }
+            node = new Node(key, hash);
+            int i = index(hash);
+            node.next = table[i];
+            table[i] = node;
+            node.queue = WINDOW;
+            window.add(node);
+            if (window.size > windowCapacity) {
+                admit(window.head);
+            }
+            return node;
+        }
+
+        private void onHit(Node node) {
+            switch (node.queue) {
+                case WINDOW -> window.moveToTail(node);
+                case PROBATION -> {
+                    probation.remove(node);
+                    node.queue = PROTECTED;
+                    protectedQueue.add(node);
+                    if (protectedQueue.size > protectedCapacity) {
+                        Node demoted = protectedQueue.head;
+                        protectedQueue.remove(demoted);
+                        demoted.queue = PROBATION;
+                        probation.add(demoted);
+                    }
+                }
+                default -> protectedQueue.moveToTail(node);
+            }
+        }
+
+        /**
+         * A entrada mais antiga da janela tenta entrar na zona principal:
+         * fica se houver espaço ou se for mais frequente do que a vítima.
+         */
+        private void admit(Node candidate) {
+            window.remove(candidate);
+            candidate.queue = PROBATION;
+            probation.add(candidate);
+            if (probation.size + protectedQueue.size <= mainCapacity) {
+                return;
+            }
+
+            Node victim = probation.head != candidate ? probation.head : protectedQueue.head;
+            if (victim == null) {
+                return;
+            }
+            if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+
+        private void evict(Node node) {
+            evictions.increment();
+            if (node.queue == PROTECTED) {
+                protectedQueue.remove(node);
+            } else {
+                probation.remove(node);
+            }
+            int i = index(node.hash);
+            if (table[i] == node) {
+                table[i] = node.next;
+            } else {
+                Node n = table[i];
+                while (n.next != node) {
+                    n = n.next;
+                }
+                n.next = node.next;
+            }
+        }
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final LongAdder evictions = new LongAdder();
 
     public Cache(int maxCapacity) {
-        // accessOrder=true: cada get() move a entrada para o fim (mais recente)
-        // removeEldestEntry: remove automaticamente a entrada mais antiga quando excede capacidade
-        this.map = new LinkedHashMap<>(maxCapacity, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheData> eldest) {
-                return size() > maxCapacity;
-            }
-        };
+        // Segmentos suficientes para as threads da TaskPool, mas com pelo menos ~16 entradas cada
+        int wanted = Math.min(Runtime.getRuntime().availableProcessors() * 4, Math.max(1, maxCapacity / 16));
+        int count = Integer.highestOneBit(Math.max(1, wanted));
+        this.segments = new Segment[count];
+        int perSegment = Math.max(1, (maxCapacity + count - 1) / count);
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(perSegment, evictions);
+        }
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(count);
     }
 
-    // --- MÉTODOS PÚBLICOS (Getters) ---
-    // NOTA: Usam lock exclusivo porque get() com accessOrder=true modifica o map
+    private static long key(int day, int productId) {
+        return ((long) day << 32) | (productId & 0xFFFFFFFFL);
+    }
 
-    public Integer getQuantidade(int day, String product) {
-        lock.lock();
-        try {
-            CacheData data = map.get(new CacheKey(day, product));
-            return data != null ? data.quantidade : null;
-        } finally {
-            lock.unlock();
+    // Mistura os bits da chave (finalizador do MurmurHash3)
+    private static long hash(long key) {
+        long h = key;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private Segment segmentFor(long hash) {
+        // Bits altos para o segmento, bits baixos para a tabela do segmento
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    // --- MÉTODOS PÚBLICOS ---
+
+    /**
+     * @return Número de entradas despejadas (ou rejeitadas pela admissão) desde o arranque
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return Número de entradas em cache
+     */
+    public long size() {
+        long total = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                total += segment.window.size + segment.probation.size + segment.protectedQueue.size;
+            } finally {
+                segment.lock.unlock();
+            }
         }
+        return total;
     }
 
-    public Double getVolume(int day, String product) {
-        lock.lock();
+    /**
+     * @return O resumo do produto no dia, ou null se não estiver em cache
+     */
+    public SalesSummary get(int day, int productId) {
+        long key = key(day, productId);
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
         try {
-            CacheData data = map.get(new CacheKey(day, product));
-            return data != null ? data.volume : null;
+            Node node = segment.get(key, hash);
+            return node != null ? node.summary : null;
         } finally {
-            lock.unlock();
+            segment.lock.unlock();
         }
     }
 
-    public Double getMaxPrice(int day, String product) {
-        lock.lock();
+    /**
+     * Guarda (ou substitui) o resumo do produto no dia.
+     */
+    public void put(int day, int productId, SalesSummary summary) {
+        long key = key(day, productId);
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
         try {
-            CacheData data = map.get(new CacheKey(day, product));
-            return data != null ? data.maxPrice : null;
+            segment.getOrCreate(key, hash).summary = summary;
         } finally {
-            lock.unlock();
+            segment.lock.unlock();
         }
     }
 
-    // --- MÉTODOS PÚBLICOS (Setters) ---
+    /**
+     * Escreve todas as entradas, das mais quentes para as mais frias, com a
+     * frequência estimada de cada uma. Cada segmento é fotografado sob o seu lock.
+     */
+    public void serialize(DataOutputStream dos) throws IOException {
+        int total = 0;
+        long[][] keys = new long[segments.length][];
+        byte[][] frequencies = new byte[segments.length][];
+        SalesSummary[][] summaries = new SalesSummary[segments.length][];
 
-    public void setQuantidade(int day, String product, int valor) {
-        lock.writeLock().lock();
-        try {
-            CacheKey key = new CacheKey(day, product);
-            map.computeIfAbsent(key, k -> new CacheData()).quantidade = valor;
-        } finally {
-            lock.writeLock().unlock();
+        for (int s = 0; s < segments.length; s++) {
+            Segment segment = segments[s];
+            segment.lock.lock();
+            try {
+                int n = segment.protectedQueue.size + segment.probation.size + segment.window.size;
+                keys[s] = new long[n];
+                frequencies[s] = new byte[n];
+                summaries[s] = new SalesSummary[n];
+                int i = 0;
+                for (AccessQueue queue : new AccessQueue[] { segment.protectedQueue, segment.probation, segment.window }) {
+                    for (Node node = queue.tail; node != null; node = node.prev) {
+                        keys[s][i] = node.key;
+                        frequencies[s][i] = (byte) segment.sketch.frequency(node.hash);
+                        summaries[s][i] = node.summary;
+                        i++;
+                    }
+                }
+                total += n;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+
+        dos.writeInt(total);
+        for (int s = 0; s < segments.length; s++) {
+            for (int i = 0; i < keys[s].length; i++) {
+                dos.writeInt((int) (keys[s][i] >>> 32));
+                dos.writeInt((int) keys[s][i]);
+                dos.writeByte(frequencies[s][i]);
+                summaries[s][i].serialize(dos);
+            }
         }
     }
 
-    public void setVolume(int day, String product, double valor) {
-        lock.writeLock().lock();
-        try {
-            CacheKey key = new CacheKey(day, product);
-            map.computeIfAbsent(key, k -> new CacheData()).volume = valor;
-        } finally {
-            lock.writeLock().unlock();
+    /**
+     * Recarrega entradas escritas por serialize. As mais frias são inseridas
+     * primeiro, para as mais quentes ficarem as mais recentes; a frequência
+     * gravada é reposta na admissão.
+     *
+     * @param keepDay Indica se as entradas de um dia ainda são válidas
+     * @return Número de entradas recarregadas
+     */
+    public int restore(DataInputStream dis, IntPredicate keepDay) throws IOException {
+        int count = dis.readInt();
+        int[] days = new int[count];
+        int[] productIds = new int[count];
+        byte[] frequencies = new byte[count];
+        SalesSummary[] summaries = new SalesSummary[count];
+        for (int i = 0; i < count; i++) {
+            days[i] = dis.readInt();
+            productIds[i] = dis.readInt();
+            frequencies[i] = dis.readByte();
+            summaries[i] = SalesSummary.deserialize(dis);
         }
+
+        int restored = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            if (keepDay.test(days[i])) {
+                insert(days[i], productIds[i], summaries[i], frequencies[i]);
+                restored++;
+            }
+        }
+        return restored;
     }
 
-    public void setMaxPrice(int day, String product, double valor) {
-        lock.writeLock().lock();
+    /**
+     * Insere uma entrada com a frequência estimada que tinha quando foi gravada.
+     */
+    private void insert(int day, int productId, SalesSummary summary, int frequency) {
+        long key = key(day, productId);
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
         try {
-            CacheKey key = new CacheKey(day, product);
-            map.computeIfAbsent(key, k -> new CacheData()).maxPrice = valor;
+            for (int i = Math.min(frequency, 15); i > 0; i--) {
+                segment.sketch.increment(hash);
+            }
+            segment.getOrCreate(key, hash).summary = summary;
         } finally {
-            lock.writeLock().unlock();
+            segment.lock.unlock();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,184 @@
+package org.Server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pré-aquecimento da cache no fim do dia.
+ *
+ * Logo a seguir ao EndDay todas as consultas ao dia acabado de fechar
+ * falham a cache. O aquecimento insere em background (na TaskPool) os
+ * resumos desse dia dos topN produtos mais consultados recentemente (ou de
+ * todos os produtos vendidos). As contagens de consultas por produto são
+ * divididas por dois em cada aquecimento, para refletirem os dias recentes.
+ *
+ * As entradas aquecidas entram como chaves novas: não contam como acessos
+ * para a admissão TinyLFU, pelo que só ficam na zona principal da cache se
+ * forem de facto consultadas.
+ *
+ * Quando os índices cobrem o dia as consultas agregadas respondem pelos
+ * índices e não leem a cache; as entradas aquecidas só servem enquanto os
+ * índices não apanham o dia. Por isso o relatório, no EndDay seguinte, separa
+ * as consultas ao dia aquecido respondidas pelos índices das respondidas pela
+ * cache (com a taxa de acertos destas).
+ */
+public class CacheWarmer {
+
+    private final Cache cache;
+    private final TaskPool pool;
+    private final int topN;
+
+    // Consultas por produto desde o último aquecimento (com decaimento)
+    private final Map<Integer, LongAdder> queryCounts = new ConcurrentHashMap<>();
+
+    // Último aquecimento e consultas ao dia aquecido desde então
+    private volatile int warmedDay = -1;
+    private volatile int warmedEntries;
+    private volatile long warmupMillis;
+    private final LongAdder warmedHits = new LongAdder();
+    private final LongAdder warmedMisses = new LongAdder();
+    private final LongAdder warmedIndexQueries = new LongAdder();
+
+    /**
+     * @param cache A cache a aquecer
+     * @param pool A pool onde corre o aquecimento
+     * @param topN Produtos a aquecer por dia: 0 = todos os do dia, N = os N mais consultados, negativo desativa
+     */
+    public CacheWarmer(Cache cache, TaskPool pool, int topN) {
+        this.cache = cache;
+        this.pool = pool;
+        this.topN = topN;
+    }
+
+    /**
+     * Regista uma consulta agregada a um produto.
+     */
+    public void recordQuery(int productId) {
+        if (topN >= 0) {
+            queryCounts.computeIfAbsent(productId, k -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Regista uma consulta à cache, para a taxa de acertos do dia aquecido.
+     */
+    public void recordLookup(int day, boolean hit) {
+        if (day == warmedDay) {
+            (hit ? warmedHits : warmedMisses).increment();
+        }
+    }
+
+    /**
+     * Regista uma consulta respondida por um índice sobre os dias [from, to).
+     */
+    public void recordIndexQuery(int from, int to) {
+        int day = warmedDay;
+        if (day >= from && day < to) {
+            warmedIndexQueries.increment();
+        }
+    }
+
+    /**
+     * Aquece a cache com o resumo de um dia acabado de fechar, em background.
+     *
+     * @param day O dia fechado
+     * @param summary O resumo do dia
+     */
+    public void warm(int day, DaySummary summary) {
+        if (topN < 0 || summary == null) {
+            return;
+        }
+        report();
+        pool.submit(() -> {
+            long start = System.nanoTime();
+            int warmed = warmNow(day, summary);
+            warmupMillis = (System.nanoTime() - start) / 1_000_000;
+            return warmed;
+        }, warmed -> {
+            if (warmed != null) {
+                System.out.println("Cache aquecida para o dia " + day + ": " + warmed
+                        + " produtos em " + warmupMillis + " ms");
+            }
+        });
+    }
+
+    private int warmNow(int day, DaySummary summary) {
+        // Contagens fixadas antes da ordenação (as consultas continuam a chegar)
+        Map<Integer, Long> frequencies = new HashMap<>();
+        for (int productId : summary.products().keySet()) {
+            LongAdder count = queryCounts.get(productId);
+            frequencies.put(productId, count == null ? 0L : count.sum());
+        }
+
+        List<Integer> products = selectProducts(frequencies);
+        for (int productId : products) {
+            cache.put(day, productId, summary.get(productId));
+        }
+
+        // Envelhece as contagens: o próximo dia dá mais peso às consultas recentes
+        queryCounts.values().removeIf(count -> {
+            long halved = count.sumThenReset() / 2;
+            count.add(halved);
+            return halved == 0;
+        });
+
+        warmedHits.reset();
+        warmedMisses.reset();
+        warmedIndexQueries.reset();
+        warmedEntries = products.size();
+        warmedDay = day;
+        return products.size();
+    }
+
+    private List<Integer> selectProducts(Map<Integer, Long> frequencies) {
+        List<Integer> products = new ArrayList<>(frequencies.keySet());
+        if (topN == 0) {
+            return products;
+        }
+        products.removeIf(productId -> frequencies.get(productId) == 0);
+        products.sort((a, b) -> Long.compare(frequencies.get(b), frequencies.get(a)));
+        return products.size() > topN ? products.subList(0, topN) : products;
+    }
+
+    /**
+     * Mostra como foram respondidas as consultas ao último dia aquecido.
+     */
+    private void report() {
+        int day = warmedDay;
+        long hits = warmedHits.sum();
+        long total = hits + warmedMisses.sum();
+        long byIndex = warmedIndexQueries.sum();
+        if (day >= 0 && total + byIndex > 0) {
+            System.out.printf("Aquecimento do dia %d (%d produtos, %d ms): %d consultas pelos índices,"
+                    + " %d/%d acertos na cache%s%n", day, warmedEntries, warmupMillis, byIndex, hits, total,
+                    total > 0 ? String.format(" (%.1f%%)", 100.0 * hits / total) : "");
+        }
+    }
+
+    /**
+     * @return Duração (ms) do último aquecimento
+     */
+    public long getLastWarmupMillis() {
+        return warmupMillis;
+    }
+
+    /**
+     * @return Consultas ao último dia aquecido respondidas pelos índices (sem ler a cache)
+     */
+    public long getWarmedDayIndexQueries() {
+        return warmedIndexQueries.sum();
+    }
+
+    /**
+     * @return Taxa de acertos das consultas à cache sobre o último dia aquecido (0 a 1), ou -1 sem consultas
+     */
+    public double getWarmedDayHitRate() {
+        long hits = warmedHits.sum();
+        long total = hits + warmedMisses.sum();
+        return total == 0 ? -1 : (double) hits / total;
+    }
+}
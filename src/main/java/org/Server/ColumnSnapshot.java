@@ -0,0 +1,49 @@
+package org.Server;
+
+/**
+ * Vendas de um produto no dia em curso, tal como estavam num instante.
+ *
+ * Partilha os arrays da coluna que continua a ser escrita, mas só expõe as
+ * primeiras size() posições, que já não mudam. É imutável.
+ */
+public class ColumnSnapshot implements ProductSales {
+
+    private final int[] quantities;
+    private final double[] prices;
+    private final int size;
+
+    ColumnSnapshot(int[] quantities, double[] prices, int size) {
+        this.quantities = quantities;
+        this.prices = prices;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int quantity(int i) {
+        return quantities[i];
+    }
+
+    @Override
+    public double price(int i) {
+        return prices[i];
+    }
+
+    /**
+     * @return O array de quantidades (válido nas posições [0, size()), só de leitura)
+     */
+    public int[] quantities() {
+        return quantities;
+    }
+
+    /**
+     * @return O array de preços totais (válido nas posições [0, size()), só de leitura)
+     */
+    public double[] prices() {
+        return prices;
+    }
+}
@@ -0,0 +1,123 @@
+package org.Server;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Leitura antecipada de dias passados a partir do disco.
+ *
+ * Quando uma consulta começa a percorrer uma janela de dias, os dias que não
+ * estão em memória são pedidos em paralelo numa pool de I/O dedicada, pela
+ * mesma ordem em que a consulta os vai visitar (do mais recente para o mais
+ * antigo). A consulta continua a processar os dias que já tem; ao chegar a um
+ * dia em carregamento junta-se a esse carregamento (ver SingleFlight na
+ * ServerDatabase) em vez de o repetir.
+ *
+ * Só são antecipados os primeiros WINDOW_PREFETCH_DAYS dias em falta, e só
+ * tantos quantos o orçamento livre levar; os restantes são lidos pela própria
+ * consulta quando lá chegar. Os dias antecipados só ficam em memória se
+ * couberem sem despejar nenhum dia residente: um varrimento longo não
+ * substitui os dias quentes por dias que talvez não volte a pedir.
+ *
+ * Janelas longas (LONG_SCAN_DAYS ou mais) indicam varrimentos de longo prazo:
+ * nesse caso, se a janela inteira foi pedida e ainda houver espaço, também são
+ * antecipados os READ_AHEAD_DAYS dias imediatamente anteriores à janela, que
+ * um pedido seguinte com uma janela maior irá precisar.
+ */
+public class DayPrefetcher {
+
+    private static final int LONG_SCAN_DAYS = 7;
+    // Máximo de dias da janela pedidos de uma vez à pool de I/O
+    private static final int WINDOW_PREFETCH_DAYS = 8;
+    // Dias antecipados antes de uma janela longa, independentemente do tamanho dela
+    private static final int READ_AHEAD_DAYS = 2;
+
+    private final TaskPool ioPool;
+    private final IntPredicate isLoaded;
+    private final IntConsumer loader;
+    private final IntPredicate hasRoomFor;
+
+    // Dias já na fila da pool, para não os pedir duas vezes
+    private final Set<Integer> queued = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong prefetched = new AtomicLong();
+
+    /**
+     * @param ioThreads Número de threads de I/O
+     * @param isLoaded Indica se um dia já está em memória
+     * @param loader Carrega um dia do disco; só fica em memória se couber sem despejos
+     * @param hasRoomFor Indica se o orçamento livre leva mais N dias
+     */
+    public DayPrefetcher(int ioThreads, IntPredicate isLoaded, IntConsumer loader,
+                         IntPredicate hasRoomFor) {
+        this.ioPool = new TaskPool(ioThreads);
+        this.isLoaded = isLoaded;
+        this.loader = loader;
+        this.hasRoomFor = hasRoomFor;
+    }
+
+    /**
+     * Antecipa os dias de uma consulta sobre [from, to).
+     *
+     * @param from Primeiro dia da janela
+     * @param to Dia a seguir ao último da janela
+     * @param oldestDay Dia mais antigo ainda em disco
+     */
+    public void onScan(int from, int to, int oldestDay) {
+        from = Math.max(from, oldestDay);
+
+        int room = WINDOW_PREFETCH_DAYS;
+        while (room > 0 && !hasRoomFor.test(room)) {
+            room--;
+        }
+        int requested = prefetch(from, to, room);
+
+        if (to - from >= LONG_SCAN_DAYS && requested < room
+                && hasRoomFor.test(requested + READ_AHEAD_DAYS)) {
+            prefetch(Math.max(oldestDay, from - READ_AHEAD_DAYS), from, READ_AHEAD_DAYS);
+        }
+    }
+
+    /**
+     * Pede, do mais recente para o mais antigo, até maxDays dias de [from, to)
+     * que não estão em memória.
+     *
+     * @return Número de dias pedidos
+     */
+    private int prefetch(int from, int to, int maxDays) {
+        int requested = 0;
+        for (int day = to - 1; day >= from && requested < maxDays; day--) {
+            if (isLoaded.test(day) || !queued.add(day)) {
+                continue;
+            }
+            requested++;
+            final int d = day;
+            ioPool.submit(() -> {
+                try {
+                    if (!isLoaded.test(d)) {
+                        loader.accept(d);
+                        prefetched.incrementAndGet();
+                    }
+                } finally {
+                    queued.remove(d);
+                }
+                return null;
+            }, result -> { });
+        }
+        return requested;
+    }
+
+    /**
+     * @return Número de dias carregados antecipadamente
+     */
+    public long getPrefetched() {
+        return prefetched.get();
+    }
+
+    public void shutdown() {
+        ioPool.shutdown();
+    }
+}
@@ -0,0 +1,305 @@
+package org.Server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Gestor dos dias fechados mantidos em memória, limitado por um orçamento de bytes.
+ *
+ * Em vez de guardar sempre os M dias mais recentes, guarda os dias que cabem
+ * no orçamento e, quando é preciso espaço, despeja o dia com menos acessos
+ * (frequência), desempatando pelo acesso mais antigo (recência). As frequências
+ * são divididas a meio periodicamente para que dias antes populares acabem
+ * por sair.
+ *
+ * Tanto os dias fechados no EndDay como os dias lidos do disco por uma
+ * consulta entram aqui.
+ *
+ * O orçamento conta os bytes dos dias residentes. Um dia despejado deixa de
+ * contar de imediato, mas a sua memória direta só é devolvida quando o GC
+ * recolhe o buffer (ver OffHeapDay): a memória nativa usada pode passar
+ * temporariamente o orçamento e é limitada por -XX:MaxDirectMemorySize.
+ */
+public class DayResidency {
+
+    // Número de acessos entre cada envelhecimento das frequências
+    private static final int AGING_PERIOD = 1024;
+
+    private static class Entry {
+        final OffHeapDay day;
+        final long bytes;
+        int frequency = 1;
+        long lastAccess;
+
+        Entry(OffHeapDay day, long lastAccess) {
+            this.day = day;
+            this.bytes = day.residentBytes();
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private final long budgetBytes;
+    private final IntConsumer evictionListener;
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private long residentBytes = 0;
+    private long clock = 0; // relógio lógico de acessos
+    private int accessesSinceAging = 0;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param budgetBytes Bytes máximos ocupados pelos dias em memória
+     * @param evictionListener Chamado com o dia despejado (fora do lock)
+     */
+    public DayResidency(long budgetBytes, IntConsumer evictionListener) {
+        this.budgetBytes = budgetBytes;
+        this.evictionListener = evictionListener;
+    }
+
+    /**
+     * Obtém um dia residente, registando o acesso.
+     *
+     * @param day O dia pretendido
+     * @return O dia, ou null se não estiver em memória
+     */
+    public OffHeapDay get(int day) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(day);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            entry.frequency++;
+            entry.lastAccess = ++clock;
+            if (++accessesSinceAging >= AGING_PERIOD) {
+                age();
+            }
+            return entry.day;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtém um dia residente sem registar o acesso (leituras internas).
+     *
+     * @return O dia, ou null se não estiver em memória
+     */
+    public OffHeapDay peek(int day) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(day);
+            return entry == null ? null : entry.day;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true se o dia está em memória (não conta como acesso)
+     */
+    public boolean contains(int day) {
+        lock.lock();
+        try {
+            return entries.containsKey(day);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admite um dia, despejando outros se for preciso.
+     * Dias maiores que o orçamento inteiro não são admitidos.
+     *
+     * @param day O número do dia
+     * @param data Os dados do dia
+     * @return true se o dia ficou em memória
+     */
+    public boolean put(int day, OffHeapDay data) {
+        List<Integer> evicted = new ArrayList<>();
+        boolean admitted;
+
+        lock.lock();
+        try {
+            Entry entry = new Entry(data, ++clock);
+            admitted = entry.bytes <= budgetBytes;
+            if (admitted) {
+                Entry previous = entries.put(day, entry);
+                if (previous != null) {
+                    residentBytes -= previous.bytes;
+                    entry.frequency = previous.frequency;
+                }
+                residentBytes += entry.bytes;
+
+                while (residentBytes > budgetBytes) {
+                    int victim = selectVictim(day);
+                    residentBytes -= entries.remove(victim).bytes;
+                    evictions.incrementAndGet();
+                    evicted.add(victim);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (int victim : evicted) {
+            evictionListener.accept(victim);
+        }
+        return admitted;
+    }
+
+    /**
+     * Admite um dia só se couber no orçamento livre, sem despejar nenhum outro.
+     * Usado para dias lidos antecipadamente, que ainda nenhuma consulta pediu e
+     * que não devem tirar o lugar a dias em uso.
+     *
+     * @param day O número do dia
+     * @param data Os dados do dia
+     * @return true se o dia ficou em memória
+     */
+    public boolean putIfFits(int day, OffHeapDay data) {
+        lock.lock();
+        try {
+            Entry entry = new Entry(data, ++clock);
+            if (entries.containsKey(day) || residentBytes + entry.bytes > budgetBytes) {
+                return false;
+            }
+            entries.put(day, entry);
+            residentBytes += entry.bytes;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimativa pelo tamanho médio dos dias residentes (sem dias residentes,
+     * basta haver orçamento livre).
+     *
+     * @param days Número de dias
+     * @return true se o orçamento livre leva mais esse número de dias
+     */
+    public boolean hasRoomFor(int days) {
+        lock.lock();
+        try {
+            if (entries.isEmpty()) {
+                return residentBytes < budgetBytes;
+            }
+            long averageBytes = residentBytes / entries.size();
+            return residentBytes + days * averageBytes <= budgetBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param bytes Tamanho do dia (OffHeapDay.residentBytesFor)
+     * @return true se um dia com este tamanho cabe sem despejar nenhum outro
+     */
+    public boolean fits(long bytes) {
+        lock.lock();
+        try {
+            return residentBytes + bytes <= budgetBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove um dia da memória (por exemplo, apagado do disco).
+     */
+    public void remove(int day) {
+        lock.lock();
+        try {
+            Entry entry = entries.remove(day);
+            if (entry != null) {
+                residentBytes -= entry.bytes;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dia com menor frequência; em empate, o acedido há mais tempo.
+     * O dia acabado de admitir nunca é escolhido.
+     */
+    private int selectVictim(int admitted) {
+        int victim = -1;
+        Entry worst = null;
+        for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+            if (e.getKey() == admitted) {
+                continue;
+            }
+            Entry candidate = e.getValue();
+            if (worst == null
+                    || candidate.frequency < worst.frequency
+                    || (candidate.frequency == worst.frequency && candidate.lastAccess < worst.lastAccess)) {
+                worst = candidate;
+                victim = e.getKey();
+            }
+        }
+        return victim;
+    }
+
+    private void age() {
+        for (Entry entry : entries.values()) {
+            entry.frequency = Math.max(1, entry.frequency / 2);
+        }
+        accessesSinceAging = 0;
+    }
+
+    public List<Integer> residentDays() {
+        lock.lock();
+        try {
+            List<Integer> days = new ArrayList<>(entries.keySet());
+            days.sort(null);
+            return days;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getResidentBytes() {
+        lock.lock();
+        try {
+            return residentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return Fração dos acessos servidos da memória (0 se ainda não houve acessos)
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("dias %s, %d/%d bytes, hit ratio %.2f, %d despejos",
+                residentDays(), getResidentBytes(), budgetBytes, getHitRatio(), getEvictions());
+    }
+}
@@ -0,0 +1,104 @@
+package org.Server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Vendas de um dia em formato colunar: productId -> SalesColumn.
+ *
+ * É também a vista (DayView) de um dia lido do disco que não ficou residente.
+ *
+ * Não é thread-safe: o dia em curso é protegido pela ServerDatabase e os
+ * dias fechados só são lidos.
+ */
+public class DaySales implements DayView {
+
+    private final Map<Integer, SalesColumn> columns;
+
+    public DaySales() {
+        this.columns = new HashMap<>();
+    }
+
+    /**
+     * Cria um dia a partir de colunas já construídas (não são copiadas).
+     */
+    DaySales(Map<Integer, SalesColumn> columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Regista uma venda de um produto.
+     */
+    public void add(int productId, int quantidade, double preco) {
+        columns.computeIfAbsent(productId, k -> new SalesColumn()).add(quantidade, preco);
+    }
+
+    /**
+     * Associa uma coluna completa a um produto (usado ao ler do disco).
+     */
+    public void put(int productId, SalesColumn column) {
+        columns.put(productId, column);
+    }
+
+    /**
+     * Acrescenta (por cópia) todas as vendas de outro dia a este.
+     */
+    public void addAll(DaySales other) {
+        for (Map.Entry<Integer, SalesColumn> entry : other.columns.entrySet()) {
+            columns.computeIfAbsent(entry.getKey(), k -> new SalesColumn(entry.getValue().size()))
+                   .addAll(entry.getValue());
+        }
+    }
+
+    /**
+     * Acrescenta (por cópia) todas as vendas de um dia qualquer a este.
+     */
+    public void addAll(DayView other) {
+        if (other instanceof DaySales heapDay) {
+            addAll(heapDay);
+            return;
+        }
+        for (int productId : other.productIds()) {
+            ProductSales sales = other.get(productId);
+            SalesColumn column = columns.computeIfAbsent(productId, k -> new SalesColumn(sales.size()));
+            for (int i = 0, n = sales.size(); i < n; i++) {
+                column.add(sales.quantity(i), sales.price(i));
+            }
+        }
+    }
+
+    /**
+     * @return A coluna de vendas do produto, ou null se não houve vendas
+     */
+    @Override
+    public SalesColumn get(int productId) {
+        return columns.get(productId);
+    }
+
+    @Override
+    public int[] productIds() {
+        int[] ids = new int[columns.size()];
+        int i = 0;
+        for (Integer id : columns.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    public Set<Map.Entry<Integer, SalesColumn>> entrySet() {
+        return columns.entrySet();
+    }
+
+    /**
+     * @return Número de produtos com vendas neste dia
+     */
+    public int size() {
+        return columns.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return columns.isEmpty();
+    }
+}
@@ -0,0 +1,52 @@
+package org.Server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.Common.SalesSummary;
+
+/**
+ * Resumo imutável de um dia fechado: productId -> SalesSummary.
+ */
+public class DaySummary {
+
+    private final Map<Integer, SalesSummary> products;
+
+    public DaySummary(Map<Integer, SalesSummary> products) {
+        this.products = products;
+    }
+
+    /**
+     * Calcula o resumo de um dia a partir das suas vendas, numa única passagem
+     * por produto. Usado para dias fechados antes de existirem resumos.
+     *
+     * @param day As vendas do dia
+     * @return O resumo do dia
+     */
+    public static DaySummary of(DayView day) {
+        int[] productIds = day.productIds();
+        Map<Integer, SalesSummary> products = new HashMap<>(productIds.length * 2);
+        for (int productId : productIds) {
+            products.put(productId, summarize(day.get(productId)));
+        }
+        return new DaySummary(products);
+    }
+
+    /**
+     * Calcula contagem, quantidade, volume e preço unitário máximo (kernels de agregação).
+     */
+    public static SalesSummary summarize(ProductSales sales) {
+        return Kernels.summarize(sales);
+    }
+
+    /**
+     * @return O resumo do produto no dia (SalesSummary.EMPTY se não houve vendas)
+     */
+    public SalesSummary get(int productId) {
+        return products.getOrDefault(productId, SalesSummary.EMPTY);
+    }
+
+    public Map<Integer, SalesSummary> products() {
+        return products;
+    }
+}
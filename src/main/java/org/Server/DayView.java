@@ -0,0 +1,19 @@
+package org.Server;
+
+/**
+ * Vista só de leitura das vendas de um dia fechado: productId -> ProductSales.
+ */
+public interface DayView {
+
+    /**
+     * @return As vendas do produto, ou null se não houve vendas
+     */
+    ProductSales get(int productId);
+
+    /**
+     * @return Os ids dos produtos com vendas neste dia
+     */
+    int[] productIds();
+
+    boolean isEmpty();
+}
@@ -1,8 +1,13 @@
 package org.Server;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -15,87 +20,133 @@ import java.io.IOException;
 /**
  * Dictionary class that provides a bidirectional mapping between String names
  * and Integer IDs.
+ *
+ * As leituras não usam locks: nome -> id é um ConcurrentHashMap e id -> nome
+ * é um array volátil que cresce por cópia. Só a criação de uma entrada nova
+ * usa um lock, para atribuir o id e publicar o array. As entradas novas são
+ * escritas no log por uma thread em background, fora do caminho das vendas.
  */
 public class Dictionary {
-    private Map<String, Integer> nameToId;
-    private Map<Integer, String> idToName;
-    private int counter = 0;
-    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> nameToId = new ConcurrentHashMap<>();
+    private volatile String[] idToName = new String[64];
+    private final AtomicInteger counter = new AtomicInteger();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Entradas novas à espera de serem escritas no log
+    private final Queue<String> logQueue = new ArrayDeque<>();
+    private final ReentrantLock logLock = new ReentrantLock();
+    private final Condition logNotEmpty = logLock.newCondition();
 
     public Dictionary() {
-        this.nameToId = new HashMap<>();
-        this.idToName = new HashMap<>();
+        Thread logger = new Thread(this::logLoop, "DictionaryLog");
+        logger.setDaemon(true);
+        logger.start();
     }
 
     public int get(String key) {
-        // Tenta primeiro com read lock (otimização para caso comum)
-        rwLock.readLock().lock();
-        try {
-            Integer id = nameToId.get(key);
-            if (id != null) {
-                return id;
-            }
-        } finally {
-            rwLock.readLock().unlock();
+        // Caso comum: o produto já existe, leitura sem locks
+        Integer id = nameToId.get(key);
+        if (id != null) {
+            return id;
         }
-        
-        // Se não encontrou, precisa de write lock para adicionar
-        rwLock.writeLock().lock();
+
+        // Produto novo: o computeIfAbsent garante um único id por nome
+        return nameToId.computeIfAbsent(key, this::addEntry);
+    }
+
+    /**
+     * Procura um nome sem o acrescentar ao dicionário (caminhos de leitura).
+     *
+     * @return O id do produto, ou -1 se nunca foi vendido
+     */
+    public int lookup(String key) {
+        Integer id = nameToId.get(key);
+        return id != null ? id : -1;
+    }
+
+    public String get(int id) {
+        String[] names = idToName;
+        return id >= 0 && id < names.length ? names[id] : null;
+    }
+
+    /**
+     * Atribui o próximo id ao nome e publica-o no array id -> nome.
+     */
+    private int addEntry(String name) {
+        writeLock.lock();
         try {
-            // Double-check: outra thread pode ter adicionado entretanto
-            Integer id = nameToId.get(key);
-            if (id == null) {
-                addEntry(key);
-                id = nameToId.get(key);
-                System.out.println("Added new entry to Dictionary: " + key + " with ID: " + id);
+            int id = counter.getAndIncrement();
+            String[] names = idToName;
+            if (id >= names.length) {
+                names = Arrays.copyOf(names, Math.max(id + 1, names.length * 2));
             }
+            names[id] = name;
+            idToName = names; // escrita volátil: publica a entrada
+            log("Added new entry to Dictionary: " + name + " with ID: " + id);
             return id;
         } finally {
-            rwLock.writeLock().unlock();
+            writeLock.unlock();
         }
     }
 
-    public String get(int id) {
-        rwLock.readLock().lock();
+    private void log(String message) {
+        logLock.lock();
         try {
-            return idToName.getOrDefault(id, null);
+            logQueue.add(message);
+            logNotEmpty.signal();
         } finally {
-            rwLock.readLock().unlock();
+            logLock.unlock();
         }
     }
 
-    private void addEntry(String name) {
-        if (!nameToId.containsKey(name)) {
-            nameToId.put(name, counter);
-            idToName.put(counter, name);
-            counter++;
+    private void logLoop() {
+        while (true) {
+            String message;
+            logLock.lock();
+            try {
+                while (logQueue.isEmpty()) {
+                    logNotEmpty.awaitUninterruptibly();
+                }
+                message = logQueue.poll();
+            } finally {
+                logLock.unlock();
+            }
+            System.out.println(message);
         }
     }
 
     public void serialize(DataOutputStream dos) throws IOException {
-        rwLock.readLock().lock();
+        String[] names;
+        int count;
+        writeLock.lock();
         try {
-            dos.writeInt(counter);
-            dos.writeInt(nameToId.size());
-            for (Map.Entry<String, Integer> entry : nameToId.entrySet()) {
-                dos.writeUTF(entry.getKey());
-                dos.writeInt(entry.getValue());
-            }
+            names = idToName;
+            count = counter.get();
         } finally {
-            rwLock.readLock().unlock();
+            writeLock.unlock();
+        }
+
+        dos.writeInt(count);
+        dos.writeInt(count);
+        for (int id = 0; id < count; id++) {
+            dos.writeUTF(names[id]);
+            dos.writeInt(id);
         }
     }
 
     public static Dictionary deserialize(DataInputStream dis) throws IOException {
         Dictionary dict = new Dictionary();
-        dict.counter = dis.readInt();
+        int counter = dis.readInt();
         int size = dis.readInt();
+        String[] names = new String[Math.max(64, counter)];
         for (int i = 0; i < size; i++) {
             String name = dis.readUTF();
             int id = dis.readInt();
             dict.nameToId.put(name, id);
-            dict.idToName.put(id, name);
+            names[id] = name;
         }
+        dict.counter.set(counter);
+        dict.idToName = names;
         return dict;
-    }   
+    }
 }
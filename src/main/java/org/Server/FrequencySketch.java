@@ -0,0 +1,83 @@
+package org.Server;
+
+/**
+ * Estimativa da frequência de acesso de cada chave (count-min sketch com
+ * contadores de 4 bits), usada pela admissão TinyLFU da Cache.
+ *
+ * Cada long guarda 16 contadores; uma chave usa um contador em cada uma de
+ * quatro linhas e a estimativa é o mínimo dos quatro. Ao fim de sampleSize
+ * incrementos todos os contadores são divididos por dois, para que a
+ * frequência reflita os acessos recentes e não o histórico todo.
+ *
+ * Não é thread-safe: cada segmento da Cache tem o seu, protegido pelo lock
+ * do segmento.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity Número de entradas da cache que o sketch acompanha
+     */
+    FrequencySketch(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+        this.table = new long[size];
+        this.mask = size - 1;
+        this.sampleSize = 10 * Math.max(16, capacity);
+    }
+
+    /**
+     * @return Frequência estimada da chave (0 a 15)
+     */
+    int frequency(long hash) {
+        int freq = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long h = rehash(hash, row);
+            int index = (int) (h >>> 32) & mask;
+            int offset = ((int) h & 15) << 2;
+            freq = Math.min(freq, (int) ((table[index] >>> offset) & 0xF));
+        }
+        return freq;
+    }
+
+    /**
+     * Regista um acesso à chave.
+     */
+    void increment(long hash) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long h = rehash(hash, row);
+            int index = (int) (h >>> 32) & mask;
+            int offset = ((int) h & 15) << 2;
+            if (((table[index] >>> offset) & 0xF) < MAX_COUNT) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    // Envelhecimento: divide todos os contadores por dois
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static long rehash(long hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return h ^ (h >>> 29);
+    }
+}
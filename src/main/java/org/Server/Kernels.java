@@ -0,0 +1,109 @@
+package org.Server;
+
+import org.Common.SalesSummary;
+
+/**
+ * Ponto de acesso aos kernels de agregação.
+ *
+ * Usa VectorKernels se o módulo jdk.incubator.vector estiver presente e os
+ * kernels vetoriais carregarem; senão ScalarKernels. As colunas no heap
+ * (SalesColumn, ColumnSnapshot) são lidas diretamente; as restantes (dias
+ * off-heap, vistas de vários dias) são primeiro copiadas em bloco para arrays
+ * de trabalho da thread.
+ */
+public final class Kernels {
+
+    private static final AggregationKernels IMPL = select();
+
+    // Arrays de trabalho por thread, para colunas que não estão no heap
+    private static final ThreadLocal<int[]> SCRATCH_QUANTITIES = ThreadLocal.withInitial(() -> new int[256]);
+    private static final ThreadLocal<double[]> SCRATCH_PRICES = ThreadLocal.withInitial(() -> new double[256]);
+
+    private Kernels() {
+    }
+
+    private static AggregationKernels select() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (AggregationKernels) Class.forName("org.Server.VectorKernels")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector API indisponível, a usar kernels escalares: " + e);
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * @return Nome da implementação em uso
+     */
+    public static String implementation() {
+        return IMPL.getClass().getSimpleName();
+    }
+
+    public static long quantity(ProductSales sales) {
+        int n = sales.size();
+        return IMPL.sumQuantity(quantities(sales, n), n);
+    }
+
+    public static double volume(ProductSales sales) {
+        int n = sales.size();
+        return IMPL.sumVolume(prices(sales, n), n);
+    }
+
+    public static double maxUnitPrice(ProductSales sales) {
+        int n = sales.size();
+        return IMPL.maxUnitPrice(quantities(sales, n), prices(sales, n), n);
+    }
+
+    /**
+     * Contagem, quantidade, volume e preço unitário máximo de um produto.
+     */
+    public static SalesSummary summarize(ProductSales sales) {
+        if (sales == null) {
+            return SalesSummary.EMPTY;
+        }
+        int n = sales.size();
+        int[] q = quantities(sales, n);
+        double[] p = prices(sales, n);
+        return new SalesSummary(n, (int) IMPL.sumQuantity(q, n), IMPL.sumVolume(p, n), IMPL.maxUnitPrice(q, p, n));
+    }
+
+    /**
+     * @return Um array com as quantidades em [0, n): o da coluna, ou uma cópia de trabalho
+     */
+    private static int[] quantities(ProductSales sales, int n) {
+        if (sales instanceof SalesColumn column) {
+            return column.quantities();
+        }
+        if (sales instanceof ColumnSnapshot snapshot) {
+            return snapshot.quantities();
+        }
+        int[] scratch = SCRATCH_QUANTITIES.get();
+        if (scratch.length < n) {
+            scratch = new int[Math.max(n, scratch.length * 2)];
+            SCRATCH_QUANTITIES.set(scratch);
+        }
+        sales.copyQuantities(scratch);
+        return scratch;
+    }
+
+    /**
+     * @return Um array com os preços em [0, n): o da coluna, ou uma cópia de trabalho
+     */
+    private static double[] prices(ProductSales sales, int n) {
+        if (sales instanceof SalesColumn column) {
+            return column.prices();
+        }
+        if (sales instanceof ColumnSnapshot snapshot) {
+            return snapshot.prices();
+        }
+        double[] scratch = SCRATCH_PRICES.get();
+        if (scratch.length < n) {
+            scratch = new double[Math.max(n, scratch.length * 2)];
+            SCRATCH_PRICES.set(scratch);
+        }
+        sales.copyPrices(scratch);
+        return scratch;
+    }
+}
@@ -4,54 +4,101 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
-
+import java.util.function.ToIntFunction;
+
+/**
+ * Notificações de vendas simultâneas e consecutivas.
+ *
+ * registerSale é chamado em cada venda e não toma o lock no caso comum: o
+ * estado do dia é um Set concorrente e o par (último produto, sequência) um
+ * AtomicLong atualizado por CAS. O lock só é usado pelas esperas e, numa
+ * venda, apenas quando há alguém à espera (contador waiting), para sinalizar
+ * as Conditions. Quem espera incrementa waiting antes de verificar o estado,
+ * e a venda atualiza o estado antes de ler waiting, pelo que nenhuma venda
+ * fica por sinalizar.
+ *
+ * registerSale e advanceDay nunca correm em simultâneo (a ServerDatabase
+ * chama-os sob a barreira do dia).
+ */
 public class NotificationManager {
     private final ReentrantLock lock = new ReentrantLock();
 
     // Agora as chaves são Sets de Inteiros (IDs)
     private final Map<Set<Integer>, Condition> simultaneousWaiters = new HashMap<>();
     private final Map<Integer, Condition> consecutiveWaiters = new HashMap<>();
+    // Esperas por produtos que ainda não têm id: acordam na primeira venda de cada produto no dia
+    private final Condition firstSaleOfDay = lock.newCondition();
 
-    // Estado leve (apenas inteiros)
-    private final Set<Integer> soldProductIds = new HashSet<>();
-    private int lastSoldId = -1;
-    private int currentStreak = 0;
+    // Estado leve (apenas inteiros), escrito sem lock
+    private final Set<Integer> soldProductIds = ConcurrentHashMap.newKeySet();
+    // Último produto vendido (32 bits altos) e tamanho da sequência (32 bits baixos)
+    private final AtomicLong streak = new AtomicLong(pack(-1, 0));
     private int currentDay;
 
+    // Threads dentro de um método de espera (só alterado com o lock)
+    private volatile int waiting = 0;
+
     private boolean shuttingDown = false;
 
     public NotificationManager(int initialDay) {
         this.currentDay = initialDay;
     }
 
+    private static long pack(int lastSoldId, int length) {
+        return ((long) lastSoldId << 32) | (length & 0xFFFFFFFFL);
+    }
+
+    private static int lastSoldId(long state) {
+        return (int) (state >> 32);
+    }
+
+    private static int streakLength(long state) {
+        return (int) state;
+    }
+
     // Recebe ID em vez de String
     public void registerSale(int productId) {
+        // Depois da primeira venda do produto no dia é só uma leitura
+        boolean firstOfDay = !soldProductIds.contains(productId) && soldProductIds.add(productId);
+
+        long state, next;
+        do {
+            state = streak.get();
+            next = lastSoldId(state) == productId
+                    ? pack(productId, streakLength(state) + 1)
+                    : pack(productId, 1);
+        } while (!streak.compareAndSet(state, next));
+
+        // Caso comum: ninguém à espera, nada a sinalizar
+        if (waiting > 0) {
+            signalWaiters(firstOfDay, streakLength(next));
+        }
+    }
+
+    private void signalWaiters(boolean firstOfDay, int length) {
         lock.lock();
         try {
-            soldProductIds.add(productId);
-
-            if (productId == lastSoldId) {
-                currentStreak++;
-            } else {
-                lastSoldId = productId;
-                currentStreak = 1;
-            }
-
-            // Verificar Simultâneas (com IDs)
-            for (Map.Entry<Set<Integer>, Condition> entry : simultaneousWaiters.entrySet()) {
-                if (soldProductIds.containsAll(entry.getKey())) {
-                    entry.getValue().signalAll();
+            // O conjunto de produtos vendidos só muda na primeira venda de cada produto
+            if (firstOfDay) {
+                firstSaleOfDay.signalAll();
+
+                // Verificar Simultâneas (com IDs)
+                for (Map.Entry<Set<Integer>, Condition> entry : simultaneousWaiters.entrySet()) {
+                    if (soldProductIds.containsAll(entry.getKey())) {
+                        entry.getValue().signalAll();
+                    }
                 }
             }
 
             // Verificar Consecutivas
-            Condition cond = consecutiveWaiters.get(currentStreak);
+            Condition cond = consecutiveWaiters.get(length);
             if (cond != null) {
                 cond.signalAll();
             }
-
         } finally {
             lock.unlock();
         }
@@ -62,14 +109,14 @@ public class NotificationManager {
         try {
             currentDay++;
             soldProductIds.clear();
-            lastSoldId = -1;
-            currentStreak = 0;
+            streak.set(pack(-1, 0));
 
             for (Condition c : simultaneousWaiters.values()) c.signalAll();
             simultaneousWaiters.clear();
 
             for (Condition c : consecutiveWaiters.values()) c.signalAll();
             consecutiveWaiters.clear();
+            firstSaleOfDay.signalAll();
             shuttingDown = false;
         } finally {
             lock.unlock();
@@ -87,6 +134,7 @@ public class NotificationManager {
             simultaneousWaiters.clear();
             for (Condition c : consecutiveWaiters.values()) c.signalAll();
             consecutiveWaiters.clear();
+            firstSaleOfDay.signalAll();
         } finally {
             lock.unlock();
         }
@@ -96,24 +144,15 @@ public class NotificationManager {
 
     // CORREÇÃO: Recebe int (IDs) em vez de String. A tradução é feita na ServerDatabase.
     public boolean checkSimultaneousSales(int id1, int id2) {
-        lock.lock();
-        try {
-            return soldProductIds.contains(id1) && soldProductIds.contains(id2);
-        } finally {
-            lock.unlock();
-        }
+        return soldProductIds.contains(id1) && soldProductIds.contains(id2);
     }
 
     public int checkConsecutiveSales(int n) {
-        lock.lock();
-        try {
-            if (currentStreak >= n) {
-                return lastSoldId;
-            }
-            return -1;
-        } finally {
-            lock.unlock();
+        long state = streak.get();
+        if (streakLength(state) >= n) {
+            return lastSoldId(state);
         }
+        return -1;
     }
 
     // --- MÉTODOS DE ESPERA (BLOCKING) ---
@@ -121,6 +160,7 @@ public class NotificationManager {
     // CORREÇÃO: Recebe int (IDs) em vez de String.
     public boolean waitForSimultaneousSales(int id1, int id2) throws InterruptedException {
         lock.lock();
+        waiting++;
         try {
             int startDay = this.currentDay;
             // Usamos HashSet para evitar crash do Set.of se id1 == id2
@@ -137,25 +177,57 @@ public class NotificationManager {
             }
             return currentDay == startDay && !shuttingDown;
         } finally {
+            waiting--;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Como waitForSimultaneousSales(int, int), para produtos que podem ainda
+     * não estar no dicionário: espera pela primeira venda de ambos sem lhes
+     * criar um id, que só é atribuído quando o produto é vendido.
+     *
+     * @param lookup Procura sem criar (-1 se o produto não existir)
+     */
+    public boolean waitForSimultaneousSales(String p1, String p2, ToIntFunction<String> lookup) throws InterruptedException {
+        lock.lock();
+        waiting++;
+        try {
+            int startDay = this.currentDay;
+            int id1 = lookup.applyAsInt(p1);
+            int id2 = lookup.applyAsInt(p2);
+
+            while ((id1 < 0 || id2 < 0) && currentDay == startDay && !shuttingDown) {
+                firstSaleOfDay.await();
+                id1 = lookup.applyAsInt(p1);
+                id2 = lookup.applyAsInt(p2);
+            }
+            if (currentDay != startDay || shuttingDown) return false;
+            return waitForSimultaneousSales(id1, id2);
+        } finally {
+            waiting--;
             lock.unlock();
         }
     }
 
     public int waitForConsecutiveSales(int n) throws InterruptedException {
         lock.lock();
+        waiting++;
         try {
             int startDay = this.currentDay;
 
-            if (currentStreak >= n) return lastSoldId;
+            long state = streak.get();
+            if (streakLength(state) >= n) return lastSoldId(state);
 
             Condition cond = consecutiveWaiters.computeIfAbsent(n, k -> lock.newCondition());
 
-            while (currentStreak < n && currentDay == startDay && !shuttingDown) {
+            while (streakLength(state = streak.get()) < n && currentDay == startDay && !shuttingDown) {
                 cond.await();
             }
             if (currentDay != startDay || shuttingDown) return -1;
-            return lastSoldId;
+            return lastSoldId(state);
         } finally {
+            waiting--;
             lock.unlock();
         }
     }
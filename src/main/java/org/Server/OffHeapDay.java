@@ -0,0 +1,175 @@
+package org.Server;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Dia fechado guardado fora do heap, num único ByteBuffer direto.
+ *
+ * Layout do buffer (N = total de vendas do dia):
+ * - N doubles: preços, agrupados por produto
+ * - N ints: quantidades, pela mesma ordem
+ *
+ * No heap fica apenas um índice compacto (ids ordenados, início e número de
+ * vendas de cada produto), pelo que o custo no heap e o trabalho do GC não
+ * dependem do número de vendas. É imutável depois de construído.
+ *
+ * A memória de um ByteBuffer direto só é libertada quando o GC recolhe o
+ * buffer (Cleaner), não quando o dia sai da DayResidency: o orçamento de
+ * bytes é indicativo e a memória direta realmente usada pode excedê-lo até
+ * ao GC seguinte. O limite efetivo é -XX:MaxDirectMemorySize (ver menu.sh),
+ * e tryCopy trata o esgotamento da memória direta sem derrubar o pedido.
+ */
+public class OffHeapDay implements DayView {
+
+    private final ByteBuffer buffer;
+    private final int[] productIds; // ordenados, para pesquisa binária
+    private final int[] starts;
+    private final int[] counts;
+    private final int quantitiesBase;
+
+    /**
+     * Vendas de um produto: uma fatia do buffer.
+     */
+    private class Column implements ProductSales {
+        private final int start;
+        private final int count;
+
+        Column(int start, int count) {
+            this.start = start;
+            this.count = count;
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+
+        @Override
+        public int quantity(int i) {
+            return buffer.getInt(quantitiesBase + (start + i) * Integer.BYTES);
+        }
+
+        @Override
+        public double price(int i) {
+            return buffer.getDouble((start + i) * Double.BYTES);
+        }
+
+        @Override
+        public void copyQuantities(int[] dst) {
+            buffer.duplicate().order(buffer.order())
+                  .position(quantitiesBase + start * Integer.BYTES)
+                  .asIntBuffer().get(dst, 0, count);
+        }
+
+        @Override
+        public void copyPrices(double[] dst) {
+            buffer.duplicate().order(buffer.order())
+                  .position(start * Double.BYTES)
+                  .asDoubleBuffer().get(dst, 0, count);
+        }
+    }
+
+    /**
+     * Bytes que o dia vai ocupar fora do heap, sem o copiar
+     * (para decidir se cabe no orçamento antes de reservar memória).
+     */
+    public static long residentBytesFor(DaySales day) {
+        long totalSales = 0;
+        for (Map.Entry<Integer, SalesColumn> entry : day.entrySet()) {
+            totalSales += entry.getValue().size();
+        }
+        return totalSales * (Double.BYTES + Integer.BYTES) + (long) day.size() * 3 * Integer.BYTES;
+    }
+
+    /**
+     * Copia um dia para fora do heap, se houver memória direta disponível.
+     *
+     * @param day O dia a copiar (não é alterado)
+     * @return O dia fora do heap, ou null se a memória direta estiver esgotada
+     */
+    public static OffHeapDay tryCopy(DaySales day) {
+        try {
+            return new OffHeapDay(day);
+        } catch (OutOfMemoryError e) {
+            // allocateDirect já tentou um GC antes de falhar: o dia fica no disco/heap
+            System.err.println("Memória direta esgotada, dia mantido fora da memória: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Copia um dia do heap para memória off-heap.
+     *
+     * @param day O dia a copiar (não é alterado)
+     */
+    public OffHeapDay(DaySales day) {
+        int numProducts = day.size();
+        this.productIds = new int[numProducts];
+        this.starts = new int[numProducts];
+        this.counts = new int[numProducts];
+
+        int p = 0;
+        for (Map.Entry<Integer, SalesColumn> entry : day.entrySet()) {
+            productIds[p++] = entry.getKey();
+        }
+        Arrays.sort(productIds);
+
+        int totalSales = 0;
+        for (int i = 0; i < numProducts; i++) {
+            starts[i] = totalSales;
+            counts[i] = day.get(productIds[i]).size();
+            totalSales += counts[i];
+        }
+
+        this.quantitiesBase = totalSales * Double.BYTES;
+        this.buffer = ByteBuffer.allocateDirect(totalSales * (Double.BYTES + Integer.BYTES))
+                                .order(ByteOrder.nativeOrder());
+
+        for (int i = 0; i < numProducts; i++) {
+            SalesColumn column = day.get(productIds[i]);
+            int[] quantities = column.quantities();
+            double[] prices = column.prices();
+            for (int j = 0; j < counts[i]; j++) {
+                int index = starts[i] + j;
+                buffer.putDouble(index * Double.BYTES, prices[j]);
+                buffer.putInt(quantitiesBase + index * Integer.BYTES, quantities[j]);
+            }
+        }
+    }
+
+    @Override
+    public ProductSales get(int productId) {
+        int i = Arrays.binarySearch(productIds, productId);
+        if (i < 0) {
+            return null;
+        }
+        return new Column(starts[i], counts[i]);
+    }
+
+    @Override
+    public int[] productIds() {
+        return productIds.clone();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return productIds.length == 0;
+    }
+
+    /**
+     * @return Bytes ocupados fora do heap
+     */
+    public long offHeapBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * @return Bytes ocupados no total: buffer off-heap mais o índice no heap
+     */
+    public long residentBytes() {
+        return offHeapBytes() + (long) productIds.length * 3 * Integer.BYTES;
+    }
+}
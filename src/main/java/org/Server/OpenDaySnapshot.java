@@ -0,0 +1,38 @@
+package org.Server;
+
+import java.util.Map;
+
+/**
+ * Fotografia só de leitura das vendas do dia em curso.
+ *
+ * Obtida sem bloquear as vendas (ver SalesBuffer.readSnapshot): cada produto
+ * mostra as vendas publicadas até ao instante em que foi lido.
+ */
+public class OpenDaySnapshot implements DayView {
+
+    private final Map<Integer, ProductSales> products;
+
+    OpenDaySnapshot(Map<Integer, ProductSales> products) {
+        this.products = products;
+    }
+
+    @Override
+    public ProductSales get(int productId) {
+        return products.get(productId);
+    }
+
+    @Override
+    public int[] productIds() {
+        int[] ids = new int[products.size()];
+        int i = 0;
+        for (Integer id : products.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return products.isEmpty();
+    }
+}
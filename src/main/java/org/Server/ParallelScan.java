@@ -0,0 +1,171 @@
+package org.Server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+
+import org.Common.FilteredEvents;
+
+/**
+ * Execução paralela (fork/join) de consultas sobre muitos dias.
+ *
+ * O intervalo de dias (e, no FilterEvents, a lista de produtos) é dividido
+ * ao meio recursivamente até cada subtarefa ter no máximo LEAF_COST unidades
+ * de trabalho (dia x produto); os resultados parciais são depois fundidos.
+ *
+ * Só compensa para consultas grandes: abaixo de costThreshold unidades as
+ * consultas continuam sequenciais na thread da TaskPool que as recebeu.
+ */
+public class ParallelScan {
+
+    // Trabalho máximo (dias x produtos) de uma subtarefa folha
+    private static final int LEAF_COST = 16;
+
+    private final ForkJoinPool pool;
+    private final int costThreshold;
+
+    /**
+     * @param costThreshold Custo mínimo (dias x produtos) para usar o caminho paralelo; 0 desativa
+     */
+    public ParallelScan(int costThreshold) {
+        this.pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.costThreshold = costThreshold;
+    }
+
+    /**
+     * @return true se uma consulta com este custo deve correr em paralelo
+     */
+    public boolean shouldParallelize(int days, int products) {
+        return costThreshold > 0 && (long) days * products >= costThreshold;
+    }
+
+    /**
+     * Combina um valor por dia sobre os dias [from, to).
+     *
+     * @param perDay Valor de um dia
+     * @param merge Combinação de dois resultados parciais (associativa)
+     * @param identity Resultado de um intervalo vazio
+     */
+    public <R> R reduceDays(int from, int to, IntFunction<R> perDay, BinaryOperator<R> merge, R identity) {
+        return pool.invoke(new ReduceTask<>(from, to, perDay, merge, identity));
+    }
+
+    /**
+     * Recolhe as vendas dos produtos nos dias [from, to), do dia mais recente
+     * para o mais antigo (a mesma ordem do caminho sequencial).
+     *
+     * @param dayLoader Obtém os dados de um dia
+     */
+    public Map<Integer, List<FilteredEvents.Event>> collectEvents(List<Integer> productIds, int from, int to,
+                                                                  IntFunction<DayView> dayLoader) {
+        return pool.invoke(new EventsTask(productIds, from, to, dayLoader));
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @SuppressWarnings("serial") // as tarefas nunca são serializadas
+    private static class ReduceTask<R> extends RecursiveTask<R> {
+        private final int from, to;
+        private final IntFunction<R> perDay;
+        private final BinaryOperator<R> merge;
+        private final R identity;
+
+        ReduceTask(int from, int to, IntFunction<R> perDay, BinaryOperator<R> merge, R identity) {
+            this.from = from;
+            this.to = to;
+            this.perDay = perDay;
+            this.merge = merge;
+            this.identity = identity;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= LEAF_COST) {
+                R result = identity;
+                for (int day = to - 1; day >= from; day--) {
+                    result = merge.apply(result, perDay.apply(day));
+                }
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            ReduceTask<R> older = new ReduceTask<>(from, mid, perDay, merge, identity);
+            older.fork();
+            R newer = new ReduceTask<>(mid, to, perDay, merge, identity).compute();
+            return merge.apply(newer, older.join());
+        }
+    }
+
+    @SuppressWarnings("serial") // as tarefas nunca são serializadas
+    private static class EventsTask extends RecursiveTask<Map<Integer, List<FilteredEvents.Event>>> {
+        private final List<Integer> productIds;
+        private final int from, to;
+        private final IntFunction<DayView> dayLoader;
+
+        EventsTask(List<Integer> productIds, int from, int to, IntFunction<DayView> dayLoader) {
+            this.productIds = productIds;
+            this.from = from;
+            this.to = to;
+            this.dayLoader = dayLoader;
+        }
+
+        @Override
+        protected Map<Integer, List<FilteredEvents.Event>> compute() {
+            int days = to - from;
+            int products = productIds.size();
+
+            if ((long) days * products <= LEAF_COST) {
+                return scan();
+            }
+
+            if (days > 1) {
+                // Divide os dias: os mais recentes ficam à frente na fusão
+                int mid = (from + to) >>> 1;
+                EventsTask older = new EventsTask(productIds, from, mid, dayLoader);
+                older.fork();
+                Map<Integer, List<FilteredEvents.Event>> result =
+                        new EventsTask(productIds, mid, to, dayLoader).compute();
+                for (Map.Entry<Integer, List<FilteredEvents.Event>> entry : older.join().entrySet()) {
+                    result.get(entry.getKey()).addAll(entry.getValue());
+                }
+                return result;
+            }
+
+            // Um só dia com muitos produtos: divide os produtos (chaves disjuntas)
+            int mid = products / 2;
+            EventsTask second = new EventsTask(productIds.subList(mid, products), from, to, dayLoader);
+            second.fork();
+            Map<Integer, List<FilteredEvents.Event>> result =
+                    new EventsTask(productIds.subList(0, mid), from, to, dayLoader).compute();
+            result.putAll(second.join());
+            return result;
+        }
+
+        private Map<Integer, List<FilteredEvents.Event>> scan() {
+            Map<Integer, List<FilteredEvents.Event>> eventsByProduct = new HashMap<>();
+            for (int pid : productIds) {
+                eventsByProduct.put(pid, new ArrayList<>());
+            }
+
+            for (int day = to - 1; day >= from; day--) {
+                DayView dayData = dayLoader.apply(day);
+                for (int pid : productIds) {
+                    ProductSales vendas = dayData.get(pid);
+                    if (vendas != null) {
+                        List<FilteredEvents.Event> events = eventsByProduct.get(pid);
+                        for (int j = 0, n = vendas.size(); j < n; j++) {
+                            events.add(new FilteredEvents.Event(vendas.quantity(j), vendas.price(j)));
+                        }
+                    }
+                }
+            }
+            return eventsByProduct;
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package org.Server;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.Common.SalesSummary;
+
 /**
  * Handles all disk I/O operations for the server.
  * Uses optimized binary serialization with DataInputStream/DataOutputStream.
@@ -15,21 +18,52 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * 
  * File formats:
  * - orders_day_X.sales: Binary sales data per day
- * - users.dat: Binary user credentials
+ * - orders_day_X.summary: Binary per-product summary of day X
+ * - users.dat: Binary user credentials (snapshot written at shutdown)
+ * - users.log: Append-only user registrations since the last snapshot
  * - dictionary.dat: Binary product name-to-ID mapping
  * - currentDay.dat: Single int for current day number
+ * - prefix.idx: Append-only log of per-day quantity/volume entries (prefix-sum index)
+ * - rangemax.idx: Append-only log of per-day max unit prices (range-max index)
+ * - cache.dat: Binary snapshot of the aggregate cache (int currentDay + Cache entries)
+ * 
+ * Files rewritten as a whole are written to a ".tmp" file first and then
+ * renamed over the old one (see writeAtomically), so a crash mid-write never
+ * leaves a partial file behind.
  */
 public class PersistenceManager {
     
     private static final String STORAGE_DIR = "storage/";
     private static final String USERS_FILE = STORAGE_DIR + "users.dat";
+    private static final String USERS_LOG_FILE = STORAGE_DIR + "users.log";
     private static final String DICTIONARY_FILE = STORAGE_DIR + "dictionary.dat";
     private static final String CURRENT_DAY_FILE = STORAGE_DIR + "currentDay.dat";
+    private static final String PREFIX_INDEX_FILE = STORAGE_DIR + "prefix.idx";
+    private static final String RANGE_MAX_INDEX_FILE = STORAGE_DIR + "rangemax.idx";
+    private static final String CACHE_FILE = STORAGE_DIR + "cache.dat";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    // Cabeçalho dos logs dos índices; ficheiros sem ele (formato antigo) são descartados
+    private static final int INDEX_LOG_MAGIC = 0x49445831; // "IDX1"
+
+    // Escreve o conteúdo de um ficheiro
+    @FunctionalInterface
+    private interface BinaryWriter {
+        void write(DataOutputStream dos) throws IOException;
+    }
+
+    // Aplica a um índice um dia lido do seu log
+    @FunctionalInterface
+    private interface IndexReplay {
+        boolean apply(int day, DataInputStream dis) throws IOException;
+    }
 
     // Locks granulares para cada tipo de ficheiro
     private final ReentrantReadWriteLock usersLock = new ReentrantReadWriteLock();
     private final ReentrantReadWriteLock dictionaryLock = new ReentrantReadWriteLock();
     private final ReentrantReadWriteLock currentDayLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock indexLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
     
     // Lock por dia - permite escrita/leitura concorrente de dias diferentes
     private final ConcurrentHashMap<Integer, ReentrantReadWriteLock> dayLocks = new ConcurrentHashMap<>();
@@ -56,14 +90,15 @@ public class PersistenceManager {
         int oldestDayToKeep = currentDay - maxDaysOnDisk;
         
         File storageDir = new File(STORAGE_DIR);
-        File[] salesFiles = storageDir.listFiles((dir, name) -> name.startsWith("orders_day_") && name.endsWith(".sales"));
+        File[] salesFiles = storageDir.listFiles((dir, name) -> name.startsWith("orders_day_")
+                && (name.endsWith(".sales") || name.endsWith(".summary")));
         
         if (salesFiles != null) {
             for (File file : salesFiles) {
                 try {
-                    // Extrai o número do dia do nome do ficheiro: orders_day_X.sales
+                    // Extrai o número do dia do nome do ficheiro: orders_day_X.sales / orders_day_X.summary
                     String name = file.getName();
-                    int day = Integer.parseInt(name.replace("orders_day_", "").replace(".sales", ""));
+                    int day = Integer.parseInt(name.substring("orders_day_".length(), name.lastIndexOf('.')));
                     
                     if (day < oldestDayToKeep) {
                         ReentrantReadWriteLock lock = getDayLock(day);
@@ -82,6 +117,19 @@ public class PersistenceManager {
         }
     }
     
+    /**
+     * Devolve o dia mais antigo que ainda é mantido em disco.
+     * 
+     * @param currentDay O dia atual
+     * @return O dia mais antigo retido (0 se não há limite)
+     */
+    public int getOldestRetainedDay(int currentDay) {
+        if (maxDaysOnDisk <= 0) {
+            return 0;
+        }
+        return Math.max(0, currentDay - maxDaysOnDisk);
+    }
+    
     /**
      * Gets or creates a lock for a specific day file.
      * 
@@ -92,6 +140,27 @@ public class PersistenceManager {
         return dayLocks.computeIfAbsent(day, k -> new ReentrantReadWriteLock());
     }
     
+    /**
+     * Writes a whole file atomically: the content goes to a ".tmp" file, which
+     * is synced and then renamed over the target. Readers (and a restart after
+     * a crash) see either the old file or the new one, never a partial write.
+     * 
+     * @param filename The file to (re)write
+     * @param writer Writes the file content
+     * @throws IOException if writing or renaming fails (the old file is kept)
+     */
+    private static void writeAtomically(String filename, BinaryWriter writer) throws IOException {
+        Path target = Path.of(filename);
+        Path tmp = Path.of(filename + TMP_SUFFIX);
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+             DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+            writer.write(dos);
+            dos.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
     // ==================== Day Sales Serialization ====================
     
     /**
@@ -107,40 +176,39 @@ public class PersistenceManager {
      *     - int: quantidade
      *     - double: preco
      * 
-     * @param orders Map of productId to list of sales
+     * @param orders The day's sales in columnar form
      * @param day The day number
      * @throws IOException if writing fails
      */
-    public void serializeDay(Map<Integer, List<Venda>> orders, int day) throws IOException {
+    public void serializeDay(DaySales orders, int day) throws IOException {
         ReentrantReadWriteLock lock = getDayLock(day);
         lock.writeLock().lock();
         try {
             String filename = STORAGE_DIR + "orders_day_" + day + ".sales";
             
-            try (DataOutputStream dos = new DataOutputStream(
-                    new BufferedOutputStream(new FileOutputStream(filename)))) {
-                
+            writeAtomically(filename, dos -> {
                 // Write number of products
                 dos.writeInt(orders.size());
                 
-                for (Map.Entry<Integer, List<Venda>> entry : orders.entrySet()) {
+                for (Map.Entry<Integer, SalesColumn> entry : orders.entrySet()) {
                     int productId = entry.getKey();
-                    List<Venda> vendas = entry.getValue();
+                    SalesColumn column = entry.getValue();
+                    int numSales = column.size();
+                    int[] quantities = column.quantities();
+                    double[] prices = column.prices();
                     
                     // Write product ID
                     dos.writeInt(productId);
                     // Write number of sales for this product
-                    dos.writeInt(vendas.size());
+                    dos.writeInt(numSales);
                     
                     // Write each sale (inline, no byte array overhead)
-                    for (Venda v : vendas) {
-                        dos.writeInt(v.getQuantidade());
-                        dos.writeDouble(v.getPreco());
+                    for (int j = 0; j < numSales; j++) {
+                        dos.writeInt(quantities[j]);
+                        dos.writeDouble(prices[j]);
                     }
                 }
-                
-                dos.flush();
-            }
+            });
         } finally {
             lock.writeLock().unlock();
         }
@@ -151,9 +219,9 @@ public class PersistenceManager {
      * Thread-safe: acquires read lock for the specific day.
      * 
      * @param day The day number to load
-     * @return Map of productId to list of sales, empty map if file doesn't exist
+     * @return The day's sales in columnar form, empty if file doesn't exist
      */
-    public Map<Integer, List<Venda>> deserializeDay(int day) {
+    public DaySales deserializeDay(int day) {
         ReentrantReadWriteLock lock = getDayLock(day);
         lock.readLock().lock();
         try {
@@ -161,10 +229,10 @@ public class PersistenceManager {
             File file = new File(filename);
             
             if (!file.exists()) {
-                return new HashMap<>();
+                return new DaySales();
             }
             
-            Map<Integer, List<Venda>> orders = new HashMap<>();
+            DaySales orders = new DaySales();
             
             try (DataInputStream dis = new DataInputStream(
                     new BufferedInputStream(new FileInputStream(file)))) {
@@ -178,21 +246,21 @@ public class PersistenceManager {
                     // Read number of sales
                     int numSales = dis.readInt();
                     
-                    List<Venda> vendas = new ArrayList<>(numSales);
+                    SalesColumn column = new SalesColumn(numSales);
                     
                     // Read each sale
                     for (int j = 0; j < numSales; j++) {
                         int quantidade = dis.readInt();
                         double preco = dis.readDouble();
-                        vendas.add(new Venda(productId, quantidade, preco));
+                        column.add(quantidade, preco);
                     }
                     
-                    orders.put(productId, vendas);
+                    orders.put(productId, column);
                 }
                 
             } catch (IOException e) {
                 System.err.println("Error reading sales file for day " + day + ": " + e.getMessage());
-                return new HashMap<>();
+                return new DaySales();
             }
             
             return orders;
@@ -201,12 +269,134 @@ public class PersistenceManager {
         }
     }
     
+    // ==================== Day Summary Serialization ====================
+    
+    /**
+     * Serializes a day's per-product summary to disk.
+     * Thread-safe: acquires write lock for the specific day.
+     * 
+     * Format:
+     * - int: number of products
+     * - For each product:
+     *   - int: productId
+     *   - int: count
+     *   - int: quantity
+     *   - double: volume
+     *   - double: maxPrice
+     * 
+     * @param summary The day summary
+     * @param day The day number
+     * @throws IOException if writing fails
+     */
+    public void serializeSummary(DaySummary summary, int day) throws IOException {
+        ReentrantReadWriteLock lock = getDayLock(day);
+        lock.writeLock().lock();
+        try {
+            String filename = STORAGE_DIR + "orders_day_" + day + ".summary";
+            
+            writeAtomically(filename, dos -> {
+                Map<Integer, SalesSummary> products = summary.products();
+                dos.writeInt(products.size());
+                
+                for (Map.Entry<Integer, SalesSummary> entry : products.entrySet()) {
+                    dos.writeInt(entry.getKey());
+                    entry.getValue().serialize(dos);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Deserializes a day's per-product summary from disk.
+     * Thread-safe: acquires read lock for the specific day.
+     * 
+     * @param day The day number to load
+     * @return The day summary, or null if the summary file doesn't exist or is invalid
+     */
+    public DaySummary deserializeSummary(int day) {
+        ReentrantReadWriteLock lock = getDayLock(day);
+        lock.readLock().lock();
+        try {
+            File file = new File(STORAGE_DIR + "orders_day_" + day + ".summary");
+            
+            if (!file.exists()) {
+                return null;
+            }
+            
+            try (DataInputStream dis = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                
+                int numProducts = dis.readInt();
+                Map<Integer, SalesSummary> products = new HashMap<>(numProducts * 2);
+                
+                for (int i = 0; i < numProducts; i++) {
+                    int productId = dis.readInt();
+                    products.put(productId, SalesSummary.deserialize(dis));
+                }
+                
+                return new DaySummary(products);
+            } catch (IOException e) {
+                System.err.println("Error reading summary file for day " + day + ": " + e.getMessage());
+                return null;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
     // ==================== Users Serialization ====================
     
+    /**
+     * Opens the users log for appending new registrations.
+     * 
+     * @return The UsersLog, or null if it cannot be opened
+     */
+    public UsersLog openUsersLog() {
+        try {
+            return new UsersLog(USERS_LOG_FILE);
+        } catch (IOException e) {
+            System.err.println("Error opening users log: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Replays the users log on top of the loaded snapshot.
+     * A truncated last record (crash mid-write) is ignored.
+     */
+    private void replayUsersLog(Map<String, String> users) {
+        File file = new File(USERS_LOG_FILE);
+        if (!file.exists()) {
+            return;
+        }
+        
+        try (DataInputStream dis = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                String username;
+                String password;
+                try {
+                    username = dis.readUTF();
+                    password = dis.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                users.put(username, password);
+            }
+        } catch (IOException e) {
+            System.err.println("Error replaying users log: " + e.getMessage());
+        }
+    }
+    
     /**
      * Saves user credentials to disk.
      * Thread-safe: acquires write lock for users file.
      * 
+     * The snapshot includes every logged registration, so the users log is
+     * truncated afterwards. The log must already be closed.
+     * 
      * Format:
      * - int: number of users
      * - For each user:
@@ -218,19 +408,25 @@ public class PersistenceManager {
     public void saveUsers(Map<String, String> users) {
         usersLock.writeLock().lock();
         try {
-            try (DataOutputStream dos = new DataOutputStream(
-                    new BufferedOutputStream(new FileOutputStream(USERS_FILE)))) {
-                
-                dos.writeInt(users.size());
-                
-                for (Map.Entry<String, String> entry : users.entrySet()) {
-                    dos.writeUTF(entry.getKey());
-                    dos.writeUTF(entry.getValue());
-                }
-                
-                dos.flush();
+            try {
+                writeAtomically(USERS_FILE, dos -> {
+                    dos.writeInt(users.size());
+                    
+                    for (Map.Entry<String, String> entry : users.entrySet()) {
+                        dos.writeUTF(entry.getKey());
+                        dos.writeUTF(entry.getValue());
+                    }
+                });
             } catch (IOException e) {
                 System.err.println("Error saving users: " + e.getMessage());
+                return; // Mantém o log: continua a ser preciso para recuperar
+            }
+
+            try {
+                // Abrir sem append deixa o log vazio
+                new FileOutputStream(USERS_LOG_FILE).close();
+            } catch (IOException e) {
+                System.err.println("Error truncating users log: " + e.getMessage());
             }
         } finally {
             usersLock.writeLock().unlock();
@@ -238,7 +434,7 @@ public class PersistenceManager {
     }
     
     /**
-     * Loads user credentials from disk.
+     * Loads user credentials from disk: the snapshot, then the users log replayed on top.
      * Thread-safe: acquires read lock for users file.
      * 
      * @return Map of username to password, empty map if file doesn't exist
@@ -249,25 +445,24 @@ public class PersistenceManager {
             File file = new File(USERS_FILE);
             Map<String, String> users = new HashMap<>();
             
-            if (!file.exists()) {
-                return users;
-            }
-            
-            try (DataInputStream dis = new DataInputStream(
-                    new BufferedInputStream(new FileInputStream(file)))) {
-                
-                int numUsers = dis.readInt();
-                
-                for (int i = 0; i < numUsers; i++) {
-                    String username = dis.readUTF();
-                    String password = dis.readUTF();
-                    users.put(username, password);
+            if (file.exists()) {
+                try (DataInputStream dis = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(file)))) {
+                    
+                    int numUsers = dis.readInt();
+                    
+                    for (int i = 0; i < numUsers; i++) {
+                        String username = dis.readUTF();
+                        String password = dis.readUTF();
+                        users.put(username, password);
+                    }
+                    
+                } catch (IOException e) {
+                    System.err.println("Error loading users: " + e.getMessage());
                 }
-                
-            } catch (IOException e) {
-                System.err.println("Error loading users: " + e.getMessage());
             }
             
+            replayUsersLog(users);
             return users;
         } finally {
             usersLock.readLock().unlock();
@@ -324,6 +519,222 @@ public class PersistenceManager {
         }
     }
     
+    // ==================== Index Serialization ====================
+    
+    /**
+     * Appends one closed day to the prefix-sum index log.
+     * Thread-safe: acquires write lock for the index files.
+     * 
+     * @param day The day just appended to the index
+     * @param summary The summary of that day
+     */
+    public void appendPrefixIndexDay(int day, DaySummary summary) {
+        appendIndexDay(PREFIX_INDEX_FILE, day, dos -> PrefixSumIndex.serializeDay(summary, dos));
+    }
+    
+    /**
+     * Loads the prefix-sum index by replaying its log.
+     * Thread-safe: acquires write lock for the index files (the log may be repaired).
+     * 
+     * @param maxDays Days from this one on are not closed yet and are dropped
+     * @return The loaded PrefixSumIndex (empty if the log doesn't exist or is invalid)
+     */
+    public PrefixSumIndex loadPrefixIndex(int maxDays) {
+        PrefixSumIndex index = new PrefixSumIndex();
+        replayIndexLog(PREFIX_INDEX_FILE, maxDays, index::appendSerializedDay);
+        return index;
+    }
+    
+    /**
+     * Appends one closed day to the range-max index log.
+     * Thread-safe: acquires write lock for the index files.
+     * 
+     * @param day The day just appended to the index
+     * @param summary The summary of that day
+     */
+    public void appendRangeMaxIndexDay(int day, DaySummary summary) {
+        appendIndexDay(RANGE_MAX_INDEX_FILE, day, dos -> RangeMaxIndex.serializeDay(summary, dos));
+    }
+    
+    /**
+     * Loads the range-max index by replaying its log.
+     * Thread-safe: acquires write lock for the index files (the log may be repaired).
+     * 
+     * @param maxDays Days from this one on are not closed yet and are dropped
+     * @return The loaded RangeMaxIndex (empty if the log doesn't exist or is invalid)
+     */
+    public RangeMaxIndex loadRangeMaxIndex(int maxDays) {
+        RangeMaxIndex index = new RangeMaxIndex();
+        replayIndexLog(RANGE_MAX_INDEX_FILE, maxDays, index::appendSerializedDay);
+        return index;
+    }
+    
+    /**
+     * Appends a day record to an index log, so EndDay writes only the new
+     * day's entries. If the write fails the log is cut back to its previous
+     * end: the day is missing from the log and is indexed again at the next
+     * startup.
+     * 
+     * The append is not synced to disk: the index can always be rebuilt from
+     * the day summaries, so a record lost in a crash only costs a catch-up at
+     * the next startup (see replayIndexLog).
+     * 
+     * Record format:
+     * - int: day
+     * - int: payload length
+     * - payload (see serializeDay in the index)
+     */
+    private void appendIndexDay(String filename, int day, BinaryWriter payload) {
+        indexLock.writeLock().lock();
+        try {
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            payload.write(new DataOutputStream(payloadBytes));
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(8 + payloadBytes.size());
+            DataOutputStream dos = new DataOutputStream(recordBytes);
+            dos.writeInt(day);
+            dos.writeInt(payloadBytes.size());
+            payloadBytes.writeTo(dos);
+            byte[] record = recordBytes.toByteArray();
+            
+            try (RandomAccessFile raf = new RandomAccessFile(filename, "rw")) {
+                long end = raf.length();
+                raf.seek(end);
+                try {
+                    raf.write(record);
+                } catch (IOException e) {
+                    raf.setLength(end);
+                    throw e;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error appending day " + day + " to " + filename + ": " + e.getMessage());
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Replays an index log into an index, in day order.
+     * 
+     * The log is cut right after the last day applied: a truncated record
+     * (crash mid-append), a day out of sequence or a day not yet closed
+     * (storage restored from an older backup) ends the replay, and the missing
+     * days are indexed again from the day summaries. A log without the header
+     * (old full-snapshot format) is reset to an empty log.
+     */
+    private void replayIndexLog(String filename, int maxDays, IndexReplay replay) {
+        indexLock.writeLock().lock();
+        try {
+            File file = new File(filename);
+            long validLength = 0;
+            
+            if (file.exists()) {
+                try (DataInputStream dis = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(file)))) {
+                    if (dis.readInt() == INDEX_LOG_MAGIC) {
+                        validLength = 4;
+                        while (true) {
+                            int day = dis.readInt();
+                            int length = dis.readInt();
+                            if (length < 0 || validLength + 8 + length > file.length()) {
+                                break; // registo incompleto ou corrompido
+                            }
+                            byte[] payload = new byte[length];
+                            dis.readFully(payload);
+                            if (day >= maxDays || !replay.apply(day,
+                                    new DataInputStream(new ByteArrayInputStream(payload)))) {
+                                break;
+                            }
+                            validLength += 8 + payload.length;
+                        }
+                    }
+                } catch (EOFException e) {
+                    // Fim do log (ou último registo incompleto)
+                } catch (IOException e) {
+                    System.err.println("Error loading index log " + filename + ": " + e.getMessage());
+                }
+            }
+            
+            if (validLength == 0) {
+                // Log novo (ou descartado): só o cabeçalho; um cabeçalho incompleto volta a ser descartado
+                try (DataOutputStream dos = new DataOutputStream(new FileOutputStream(filename))) {
+                    dos.writeInt(INDEX_LOG_MAGIC);
+                }
+            } else if (validLength < file.length()) {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(validLength);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error repairing index log " + filename + ": " + e.getMessage());
+        } finally {
+            indexLock.writeLock().unlock();
+        }
+    }
+    
+    // ==================== Cache Serialization ====================
+
+    /**
+     * Saves a snapshot of the aggregate cache, tagged with the current day.
+     * Thread-safe: acquires write lock for the cache file.
+     * 
+     * @param cache The Cache to save
+     * @param currentDay The current (open) day; only entries of earlier days are valid
+     */
+    public void saveCache(Cache cache, int currentDay) {
+        cacheLock.writeLock().lock();
+        try {
+            try {
+                writeAtomically(CACHE_FILE, dos -> {
+                    dos.writeInt(currentDay);
+                    cache.serialize(dos);
+                });
+            } catch (IOException e) {
+                System.err.println("Error saving cache: " + e.getMessage());
+            }
+        } finally {
+            cacheLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reloads the cache snapshot into the given cache.
+     * Entries are kept only for closed days still on disk: days before
+     * currentDay (closed-day aggregates never change) and not older than the
+     * oldest retained day. A snapshot from a later day than currentDay (e.g.
+     * storage restored from an older backup) is discarded.
+     * Thread-safe: acquires read lock for the cache file.
+     * 
+     * @param cache The (empty) Cache to fill
+     * @param currentDay The current day loaded from disk
+     * @return The number of entries restored
+     */
+    public int loadCache(Cache cache, int currentDay) {
+        cacheLock.readLock().lock();
+        try {
+            File file = new File(CACHE_FILE);
+
+            if (!file.exists()) {
+                return 0;
+            }
+
+            try (DataInputStream dis = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                int savedDay = dis.readInt();
+                if (savedDay > currentDay) {
+                    return 0;
+                }
+                int oldestDay = getOldestRetainedDay(currentDay);
+                return cache.restore(dis, day -> day >= oldestDay && day < currentDay);
+            } catch (IOException e) {
+                System.err.println("Error loading cache: " + e.getMessage());
+                return 0;
+            }
+        } finally {
+            cacheLock.readLock().unlock();
+        }
+    }
+
     // ==================== Current Day Serialization ====================
     
     /**
@@ -0,0 +1,193 @@
+package org.Server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.Common.SalesSummary;
+
+/**
+ * Índice de somas acumuladas por produto, indexado por dia.
+ *
+ * Para cada produto guarda cumQuantity[d] e cumVolume[d] = soma dos dias
+ * [0, d). A soma de qualquer intervalo de dias [from, to) são duas leituras:
+ * cum[to] - cum[from].
+ *
+ * Os dias são acrescentados por ordem no EndDay. Um produto só é estendido
+ * nos dias em que vende: depois da sua última venda o acumulado mantém-se,
+ * pelo que acrescentar um dia custa O(produtos vendidos nesse dia).
+ */
+public class PrefixSumIndex {
+
+    // Somas acumuladas de um produto; válidas nas posições [0, filled]
+    private static class Series {
+        long[] cumQuantity = new long[8];
+        double[] cumVolume = new double[8];
+        int filled = 0;
+
+        long quantityAt(int day) {
+            return cumQuantity[Math.min(day, filled)];
+        }
+
+        double volumeAt(int day) {
+            return cumVolume[Math.min(day, filled)];
+        }
+
+        /**
+         * Regista os totais do dia, preenchendo os dias sem vendas desde o último.
+         */
+        void append(int day, long quantity, double volume) {
+            if (day + 2 > cumQuantity.length) {
+                int newLength = Math.max(day + 2, cumQuantity.length * 2);
+                cumQuantity = Arrays.copyOf(cumQuantity, newLength);
+                cumVolume = Arrays.copyOf(cumVolume, newLength);
+            }
+            for (int d = filled + 1; d <= day; d++) {
+                cumQuantity[d] = cumQuantity[filled];
+                cumVolume[d] = cumVolume[filled];
+            }
+            cumQuantity[day + 1] = cumQuantity[day] + quantity;
+            cumVolume[day + 1] = cumVolume[day] + volume;
+            filled = day + 1;
+        }
+    }
+
+    private final Map<Integer, Series> series = new HashMap<>();
+    private int coveredDays = 0;
+    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+    /**
+     * Acrescenta um dia fechado ao índice.
+     * Só aceita o dia seguinte ao último indexado; outros dias são ignorados.
+     *
+     * @param day O dia fechado
+     * @param summary O resumo desse dia
+     * @return true se o dia foi acrescentado
+     */
+    public boolean appendDay(int day, DaySummary summary) {
+        rwLock.writeLock().lock();
+        try {
+            if (day != coveredDays) {
+                return false;
+            }
+            for (Map.Entry<Integer, SalesSummary> entry : summary.products().entrySet()) {
+                SalesSummary s = entry.getValue();
+                series.computeIfAbsent(entry.getKey(), k -> new Series())
+                      .append(day, s.quantity(), s.volume());
+            }
+            coveredDays = day + 1;
+            return true;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Número de dias indexados (os dias [0, coveredDays))
+     */
+    public int getCoveredDays() {
+        rwLock.readLock().lock();
+        try {
+            return coveredDays;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true se todos os dias anteriores a currentDay estão indexados
+     */
+    public boolean covers(int currentDay) {
+        return getCoveredDays() >= currentDay;
+    }
+
+    /**
+     * Quantidade vendida do produto nos dias [from, to).
+     */
+    public long quantityBetween(int productId, int from, int to) {
+        rwLock.readLock().lock();
+        try {
+            Series s = series.get(productId);
+            if (s == null || from >= to) {
+                return 0;
+            }
+            return s.quantityAt(to) - s.quantityAt(from);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Volume de vendas do produto nos dias [from, to).
+     */
+    public double volumeBetween(int productId, int from, int to) {
+        rwLock.readLock().lock();
+        try {
+            Series s = series.get(productId);
+            if (s == null || from >= to) {
+                return 0.0;
+            }
+            return s.volumeAt(to) - s.volumeAt(from);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Grava as entradas que appendDay acrescenta para um dia. O índice é
+     * persistido dia a dia (ver PersistenceManager), sem regravar os dias
+     * anteriores.
+     *
+     * Format:
+     * - int: number of products
+     * - For each product:
+     *   - int: productId
+     *   - int: quantity
+     *   - double: volume
+     */
+    public static void serializeDay(DaySummary summary, DataOutputStream dos) throws IOException {
+        Map<Integer, SalesSummary> products = summary.products();
+        dos.writeInt(products.size());
+        for (Map.Entry<Integer, SalesSummary> entry : products.entrySet()) {
+            dos.writeInt(entry.getKey());
+            dos.writeInt(entry.getValue().quantity());
+            dos.writeDouble(entry.getValue().volume());
+        }
+    }
+
+    /**
+     * Acrescenta um dia gravado por serializeDay.
+     * Tal como appendDay, só aceita o dia seguinte ao último indexado.
+     *
+     * @return true se o dia foi acrescentado
+     */
+    public boolean appendSerializedDay(int day, DataInputStream dis) throws IOException {
+        int numProducts = dis.readInt();
+        int[] productIds = new int[numProducts];
+        int[] quantities = new int[numProducts];
+        double[] volumes = new double[numProducts];
+        for (int i = 0; i < numProducts; i++) {
+            productIds[i] = dis.readInt();
+            quantities[i] = dis.readInt();
+            volumes[i] = dis.readDouble();
+        }
+
+        rwLock.writeLock().lock();
+        try {
+            if (day != coveredDays) {
+                return false;
+            }
+            for (int i = 0; i < numProducts; i++) {
+                series.computeIfAbsent(productIds[i], k -> new Series()).append(day, quantities[i], volumes[i]);
+            }
+            coveredDays = day + 1;
+            return true;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.Server;
+
+/**
+ * Vista só de leitura das vendas de um produto num dia.
+ *
+ * A venda i tem quantidade quantity(i) e preço total price(i), com
+ * 0 <= i < size(). Implementada sobre arrays no heap (SalesColumn) ou
+ * sobre memória off-heap (OffHeapDay).
+ */
+public interface ProductSales {
+
+    int size();
+
+    int quantity(int i);
+
+    double price(int i);
+
+    /**
+     * Copia as quantidades para dst[0, size()).
+     */
+    default void copyQuantities(int[] dst) {
+        for (int i = 0, n = size(); i < n; i++) {
+            dst[i] = quantity(i);
+        }
+    }
+
+    /**
+     * Copia os preços totais para dst[0, size()).
+     */
+    default void copyPrices(double[] dst) {
+        for (int i = 0, n = size(); i < n; i++) {
+            dst[i] = price(i);
+        }
+    }
+}
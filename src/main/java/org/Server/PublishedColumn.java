@@ -0,0 +1,48 @@
+package org.Server;
+
+/**
+ * Coluna de vendas do dia em curso que pode ser lida sem locks enquanto é escrita.
+ *
+ * Só pode haver um escritor de cada vez (o lock do produto ou a thread dona
+ * do buffer). Cada venda é escrita nos arrays e só depois publicada: o escritor
+ * publica primeiro os arrays (quando crescem) e por fim o tamanho, ambos
+ * voláteis. Um leitor lê o tamanho antes dos arrays, pelo que os arrays que
+ * vê contêm sempre pelo menos as vendas [0, tamanho) — as posições já
+ * publicadas nunca mais são alteradas e um array novo é uma cópia do anterior.
+ */
+class PublishedColumn {
+
+    private final SalesColumn column = new SalesColumn();
+
+    private volatile int[] quantities = column.quantities();
+    private volatile double[] prices = column.prices();
+    private volatile int size = 0;
+
+    /**
+     * Regista e publica uma venda (um escritor de cada vez).
+     */
+    void add(int quantidade, double preco) {
+        column.add(quantidade, preco);
+        int[] q = column.quantities();
+        if (q != quantities) {
+            quantities = q;
+            prices = column.prices();
+        }
+        size = column.size();
+    }
+
+    /**
+     * @return As vendas publicadas até agora; não bloqueia o escritor
+     */
+    ColumnSnapshot snapshot() {
+        int n = size;
+        return new ColumnSnapshot(quantities, prices, n);
+    }
+
+    /**
+     * @return A coluna completa (só com os escritores excluídos)
+     */
+    SalesColumn column() {
+        return column;
+    }
+}
@@ -0,0 +1,211 @@
+package org.Server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.Common.SalesSummary;
+
+/**
+ * Índice de máximos por intervalo de dias (sparse table por produto).
+ *
+ * O preço máximo não se decompõe em somas acumuladas, mas o máximo de um
+ * intervalo é o máximo de dois blocos de potência de 2 que o cobrem:
+ * level[k][i] = max(preços máximos diários das vendas i .. i + 2^k - 1).
+ *
+ * Cada produto só guarda os dias em que vendeu (sem vendas o máximo é 0),
+ * pelo que a janela [from, to) é primeiro traduzida em posições por pesquisa
+ * binária: consulta em O(log D), acrescentar um dia em O(log D) por produto
+ * vendido (uma entrada nova por nível).
+ */
+public class RangeMaxIndex {
+
+    // Máximos diários de um produto, pelos dias em que vendeu
+    private static class Series {
+        int[] days = new int[8];
+        double[][] levels = { new double[8] };
+        int size = 0;
+
+        void append(int day, double maxPrice) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                for (int k = 0; k < levels.length; k++) {
+                    levels[k] = Arrays.copyOf(levels[k], size * 2);
+                }
+            }
+            days[size] = day;
+            levels[0][size] = maxPrice;
+            size++;
+
+            // Novo nível quando o número de entradas chega à próxima potência de 2
+            if ((1 << levels.length) <= size) {
+                levels = Arrays.copyOf(levels, levels.length + 1);
+                levels[levels.length - 1] = new double[days.length];
+            }
+
+            // Só o bloco que termina na nova entrada muda em cada nível
+            for (int k = 1; k < levels.length; k++) {
+                int start = size - (1 << k);
+                if (start < 0) {
+                    break;
+                }
+                int half = 1 << (k - 1);
+                levels[k][start] = Math.max(levels[k - 1][start], levels[k - 1][start + half]);
+            }
+        }
+
+        /**
+         * @return Primeira posição com dia >= day
+         */
+        int lowerBound(int day) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (days[mid] < day) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        double maxBetween(int from, int to) {
+            int lo = lowerBound(from);
+            int hi = lowerBound(to);
+            if (lo >= hi) {
+                return 0.0;
+            }
+            int k = 31 - Integer.numberOfLeadingZeros(hi - lo);
+            return Math.max(levels[k][lo], levels[k][hi - (1 << k)]);
+        }
+    }
+
+    private final Map<Integer, Series> series = new HashMap<>();
+    private int coveredDays = 0;
+    private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+    /**
+     * Acrescenta um dia fechado ao índice.
+     * Só aceita o dia seguinte ao último indexado; outros dias são ignorados.
+     *
+     * @param day O dia fechado
+     * @param summary O resumo desse dia
+     * @return true se o dia foi acrescentado
+     */
+    public boolean appendDay(int day, DaySummary summary) {
+        rwLock.writeLock().lock();
+        try {
+            if (day != coveredDays) {
+                return false;
+            }
+            for (Map.Entry<Integer, SalesSummary> entry : summary.products().entrySet()) {
+                SalesSummary s = entry.getValue();
+                if (s.count() > 0) {
+                    series.computeIfAbsent(entry.getKey(), k -> new Series()).append(day, s.maxPrice());
+                }
+            }
+            coveredDays = day + 1;
+            return true;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Número de dias indexados (os dias [0, coveredDays))
+     */
+    public int getCoveredDays() {
+        rwLock.readLock().lock();
+        try {
+            return coveredDays;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true se todos os dias anteriores a currentDay estão indexados
+     */
+    public boolean covers(int currentDay) {
+        return getCoveredDays() >= currentDay;
+    }
+
+    /**
+     * Preço unitário máximo do produto nos dias [from, to).
+     */
+    public double maxPriceBetween(int productId, int from, int to) {
+        rwLock.readLock().lock();
+        try {
+            Series s = series.get(productId);
+            if (s == null || from >= to) {
+                return 0.0;
+            }
+            return s.maxBetween(from, to);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Grava as entradas que appendDay acrescenta para um dia: só os máximos
+     * diários, os níveis são reconstruídos ao carregar. O índice é persistido
+     * dia a dia (ver PersistenceManager), sem regravar os dias anteriores.
+     *
+     * Format:
+     * - int: number of products with sales
+     * - For each product:
+     *   - int: productId
+     *   - double: maxPrice
+     */
+    public static void serializeDay(DaySummary summary, DataOutputStream dos) throws IOException {
+        Map<Integer, SalesSummary> products = summary.products();
+        int sold = 0;
+        for (SalesSummary s : products.values()) {
+            if (s.count() > 0) {
+                sold++;
+            }
+        }
+        dos.writeInt(sold);
+        for (Map.Entry<Integer, SalesSummary> entry : products.entrySet()) {
+            if (entry.getValue().count() > 0) {
+                dos.writeInt(entry.getKey());
+                dos.writeDouble(entry.getValue().maxPrice());
+            }
+        }
+    }
+
+    /**
+     * Acrescenta um dia gravado por serializeDay.
+     * Tal como appendDay, só aceita o dia seguinte ao último indexado.
+     *
+     * @return true se o dia foi acrescentado
+     */
+    public boolean appendSerializedDay(int day, DataInputStream dis) throws IOException {
+        int numProducts = dis.readInt();
+        int[] productIds = new int[numProducts];
+        double[] maxPrices = new double[numProducts];
+        for (int i = 0; i < numProducts; i++) {
+            productIds[i] = dis.readInt();
+            maxPrices[i] = dis.readDouble();
+        }
+
+        rwLock.writeLock().lock();
+        try {
+            if (day != coveredDays) {
+                return false;
+            }
+            for (int i = 0; i < numProducts; i++) {
+                series.computeIfAbsent(productIds[i], k -> new Series()).append(day, maxPrices[i]);
+            }
+            coveredDays = day + 1;
+            return true;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+}
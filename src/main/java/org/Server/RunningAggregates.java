@@ -0,0 +1,75 @@
+package org.Server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.Common.SalesSummary;
+
+/**
+ * Totais por produto do dia em curso, atualizados a cada venda.
+ *
+ * Usa acumuladores lock-free (LongAdder/DoubleAdder e CAS para o máximo),
+ * pelo que registar vendas não bloqueia e as consultas "hoje" são O(1),
+ * independentemente do número de vendas.
+ */
+class RunningAggregates {
+
+    // Acumuladores de um produto
+    private static class Totals {
+        final LongAdder count = new LongAdder();
+        final LongAdder quantity = new LongAdder();
+        final DoubleAdder volume = new DoubleAdder();
+        final AtomicLong maxPriceBits = new AtomicLong(Double.doubleToRawLongBits(0.0));
+
+        void record(int quantidade, double preco) {
+            count.increment();
+            quantity.add(quantidade);
+            volume.add(preco);
+
+            double unitPrice = preco / quantidade;
+            long current = maxPriceBits.get();
+            while (unitPrice > Double.longBitsToDouble(current)
+                    && !maxPriceBits.compareAndSet(current, Double.doubleToRawLongBits(unitPrice))) {
+                current = maxPriceBits.get();
+            }
+        }
+
+        SalesSummary summary() {
+            return new SalesSummary(count.intValue(), quantity.intValue(), volume.sum(),
+                                    Double.longBitsToDouble(maxPriceBits.get()));
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, Totals> totals = new ConcurrentHashMap<>();
+
+    /**
+     * Atualiza os totais do produto com uma venda.
+     */
+    public void record(int productId, int quantidade, double preco) {
+        totals.computeIfAbsent(productId, k -> new Totals()).record(quantidade, preco);
+    }
+
+    /**
+     * @return Os totais atuais do produto (SalesSummary.EMPTY se não houve vendas)
+     */
+    public SalesSummary get(int productId) {
+        Totals t = totals.get(productId);
+        return t == null ? SalesSummary.EMPTY : t.summary();
+    }
+
+    /**
+     * Fecha os totais num resumo do dia.
+     * Só é exato com os escritores excluídos (barreira de fim de dia).
+     */
+    public DaySummary toDaySummary() {
+        Map<Integer, SalesSummary> products = new HashMap<>(totals.size() * 2);
+        for (Map.Entry<Integer, Totals> entry : totals.entrySet()) {
+            products.put(entry.getKey(), entry.getValue().summary());
+        }
+        return new DaySummary(products);
+    }
+}
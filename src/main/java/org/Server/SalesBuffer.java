@@ -0,0 +1,48 @@
+package org.Server;
+
+import org.Common.SalesSummary;
+
+/**
+ * Estrutura onde são acumuladas as vendas do dia em curso.
+ *
+ * O add pode ser chamado concorrentemente por várias threads. O snapshot só
+ * pode ser chamado com os escritores excluídos (barreira de fim de dia da
+ * ServerDatabase) e devolve o dia completo pronto a fechar. O readSnapshot
+ * pode ser chamado a qualquer momento e não bloqueia os escritores.
+ */
+interface SalesBuffer {
+
+    /**
+     * Regista uma venda no dia em curso.
+     */
+    void add(int productId, int quantidade, double preco);
+
+    /**
+     * @return true se ainda não foi registada nenhuma venda
+     */
+    boolean isEmpty();
+
+    /**
+     * @return As vendas acumuladas como um DaySales
+     */
+    DaySales snapshot();
+
+    /**
+     * Fotografia das vendas publicadas até agora, para consultas ao dia em curso.
+     * Não bloqueia nem é bloqueada pelo add.
+     */
+    OpenDaySnapshot readSnapshot();
+
+    /**
+     * Totais de um produto no dia em curso até agora. Não bloqueia o add.
+     *
+     * @return Os totais (SalesSummary.EMPTY se não houve vendas)
+     */
+    SalesSummary summary(int productId);
+
+    /**
+     * Fecha os totais num resumo do dia.
+     * Só pode ser chamado com os escritores excluídos (barreira de fim de dia).
+     */
+    DaySummary toDaySummary();
+}
@@ -0,0 +1,94 @@
+package org.Server;
+
+import java.util.Arrays;
+
+/**
+ * Vendas de um produto num dia, guardadas em colunas de primitivos.
+ *
+ * Em vez de um objeto Venda por venda (com o productId repetido), guarda
+ * as quantidades e os preços em dois arrays que crescem por duplicação.
+ * Só as primeiras size() posições dos arrays são válidas.
+ *
+ * Não é thread-safe: quem escreve tem de garantir exclusão mútua.
+ */
+public class SalesColumn implements ProductSales {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] quantities;
+    private double[] prices;
+    private int size = 0;
+
+    public SalesColumn() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public SalesColumn(int capacity) {
+        int initial = Math.max(1, capacity);
+        this.quantities = new int[initial];
+        this.prices = new double[initial];
+    }
+
+    /**
+     * Acrescenta uma venda ao fim da coluna.
+     *
+     * @param quantidade Quantidade vendida
+     * @param preco Preço total da venda
+     */
+    public void add(int quantidade, double preco) {
+        if (size == quantities.length) {
+            grow(size + 1);
+        }
+        quantities[size] = quantidade;
+        prices[size] = preco;
+        size++;
+    }
+
+    /**
+     * Acrescenta todas as vendas de outra coluna (cópia, a outra não é alterada).
+     */
+    public void addAll(SalesColumn other) {
+        int n = other.size;
+        if (size + n > quantities.length) {
+            grow(size + n);
+        }
+        System.arraycopy(other.quantities, 0, quantities, size, n);
+        System.arraycopy(other.prices, 0, prices, size, n);
+        size += n;
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(minCapacity, quantities.length * 2);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        prices = Arrays.copyOf(prices, newCapacity);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int quantity(int i) {
+        return quantities[i];
+    }
+
+    @Override
+    public double price(int i) {
+        return prices[i];
+    }
+
+    /**
+     * @return O array de quantidades (válido nas posições [0, size()))
+     */
+    public int[] quantities() {
+        return quantities;
+    }
+
+    /**
+     * @return O array de preços totais (válido nas posições [0, size()))
+     */
+    public double[] prices() {
+        return prices;
+    }
+}
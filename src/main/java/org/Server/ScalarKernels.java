@@ -0,0 +1,37 @@
+package org.Server;
+
+/**
+ * Kernels de agregação escalares: usados quando a Vector API não está disponível.
+ */
+public class ScalarKernels implements AggregationKernels {
+
+    @Override
+    public long sumQuantity(int[] q, int n) {
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            total += q[i];
+        }
+        return total;
+    }
+
+    @Override
+    public double sumVolume(double[] p, int n) {
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            total += p[i];
+        }
+        return total;
+    }
+
+    @Override
+    public double maxUnitPrice(int[] q, double[] p, int n) {
+        double max = 0.0;
+        for (int i = 0; i < n; i++) {
+            double unitPrice = p[i] / q[i];
+            if (unitPrice > max) {
+                max = unitPrice;
+            }
+        }
+        return max;
+    }
+}
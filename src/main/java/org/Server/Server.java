@@ -1,6 +1,7 @@
 package org.Server;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.Scanner;
@@ -9,6 +10,8 @@ import java.util.concurrent.locks.ReentrantLock;
 import org.Utils.RequestType;
 import org.Utils.TaggedConnection;
 
+import com.sun.management.HotSpotDiagnosticMXBean;
+
 /**
  * The main server class that listens for incoming client connections.
  */
@@ -22,6 +25,16 @@ public class Server {
     private static final int MAX_CLIENTS = 10;
     private static final int DEFAULT_PORT = 12345;
     private static final int TASK_POOL_SIZE = 8;
+    // true: cada thread acumula as vendas num buffer próprio, fundido no EndDay
+    private static final boolean THREAD_LOCAL_INGESTION = false;
+    // Custo (dias x produtos) a partir do qual as consultas usam fork/join; 0 desativa
+    private static final int PARALLEL_COST_THRESHOLD = 64;
+    // Produtos do dia fechado aquecidos na cache no EndDay: N = os N mais consultados, 0 = todos, -1 desativa
+    private static final int CACHE_WARMUP_PRODUCTS = 32;
+    // Intervalo da linha de log com as métricas da cache e do armazenamento
+    private static final long METRICS_LOG_INTERVAL_MS = 60_000;
+    // Memória direta desejável por byte do orçamento: dias despejados só a libertam no GC
+    private static final int DIRECT_MEMORY_HEADROOM = 2;
 
     private final Thread[] workers = new Thread[MAX_CLIENTS];
     private final ReentrantLock lock = new ReentrantLock();
@@ -32,15 +45,23 @@ public class Server {
     /**
      * Initializes a Server instance with a fresh database.
      * 
-     * @param daysInMemory Número de dias a manter em memória
+     * @param memoryBudgetBytes Bytes máximos para os dias fechados em memória
      * @param cacheCapacity Capacidade da cache
      * @param daysOnDisk Número de dias a manter em disco (0 = sem limite)
      */
-    public Server(int daysInMemory, int cacheCapacity, int daysOnDisk) {
-        this.database = new ServerDatabase(daysInMemory, daysOnDisk);
+    public Server(long memoryBudgetBytes, int cacheCapacity, int daysOnDisk) {
+        checkDirectMemory(memoryBudgetBytes);
+        ServerMetrics metrics = new ServerMetrics();
+        this.database = new ServerDatabase(memoryBudgetBytes, daysOnDisk, THREAD_LOCAL_INGESTION, metrics);
         Cache cache = new Cache(cacheCapacity);
-        this.skeleton = new ServerSkeleton(database, cache);
+        metrics.registerGauge("cache.size", cache::size);
+        metrics.registerGauge("cache.evictions", cache::getEvictions);
+        System.out.println("cache entries restored: " + database.loadCache(cache));
         this.taskPool = new TaskPool(TASK_POOL_SIZE);
+        metrics.registerGauge("tasks.expired", taskPool::getExpiredTasks);
+        CacheWarmer warmer = new CacheWarmer(cache, taskPool, CACHE_WARMUP_PRODUCTS);
+        this.skeleton = new ServerSkeleton(database, cache, PARALLEL_COST_THRESHOLD, warmer, metrics);
+        metrics.startPeriodicLog(METRICS_LOG_INTERVAL_MS);
     }
 
     /**
@@ -62,6 +83,7 @@ public class Server {
             serverSocket.setSoTimeout(1000);
             System.out.println("=== Servidor Iniciado ===");
             System.out.println("Porta: " + port);
+            System.out.println("Kernels de agregação: " + Kernels.implementation());
             System.out.println("Aguardando conexões...\n");
 
             while (isRunning()) {
@@ -125,6 +147,29 @@ public class Server {
         }
     }
 
+    /**
+     * Avisa se o orçamento dos dias em memória não deixa folga na memória direta
+     * da JVM. O orçamento é indicativo: a memória de um dia despejado só é
+     * libertada quando o GC recolhe o seu buffer (ver OffHeapDay).
+     */
+    private static void checkDirectMemory(long memoryBudgetBytes) {
+        long maxDirect = Runtime.getRuntime().maxMemory(); // valor por omissão da JVM
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long configured = Long.parseLong(hotspot.getVMOption("MaxDirectMemorySize").getValue());
+            if (configured > 0) {
+                maxDirect = configured;
+            }
+        } catch (RuntimeException e) {
+            // JVM sem a opção: fica o valor por omissão
+        }
+        if (memoryBudgetBytes > maxDirect / DIRECT_MEMORY_HEADROOM) {
+            System.out.println("[AVISO] Orçamento de memória (" + (memoryBudgetBytes >> 20) + " MB) acima de 1/"
+                    + DIRECT_MEMORY_HEADROOM + " da memória direta da JVM (" + (maxDirect >> 20)
+                    + " MB): aumente -XX:MaxDirectMemorySize ou reduza o orçamento.");
+        }
+    }
+
     private int findFreeSlot() {
         for (int i = 0; i < MAX_CLIENTS; i++) {
             if (workers[i] == null || !workers[i].isAlive()) {
@@ -142,7 +187,7 @@ public class Server {
 
         Scanner sc = new Scanner(System.in);
         int daysOnDisk = -1; // -1 indica que ainda não foi definido
-        int daysInMemory = 0;
+        int memoryBudgetMB = 0;
         int cacheCapacity = 0;
 
         while (daysOnDisk < 0) {
@@ -156,15 +201,15 @@ public class Server {
                 System.out.println("Invalid number of days. Please enter a valid number.");
             }
         }
-        while (daysInMemory <= 1) {
-            System.out.print("Enter the number of days to be kept in memory: ");
+        while (memoryBudgetMB <= 0) {
+            System.out.print("Enter the memory budget for past days (MB): ");
             try {
-                daysInMemory = Integer.parseInt(sc.nextLine());
-                if (daysInMemory <= 1) {
-                    System.out.println("Number of days must be greater than 1.");
+                memoryBudgetMB = Integer.parseInt(sc.nextLine());
+                if (memoryBudgetMB <= 0) {
+                    System.out.println("Memory budget must be greater than 0.");
                 }
             } catch (NumberFormatException e) {
-                System.out.println("Invalid number of days. Please enter a valid number of days.");
+                System.out.println("Invalid memory budget. Please enter a valid number.");
             }
         }
         while (cacheCapacity <= 0) {
@@ -180,7 +225,7 @@ public class Server {
         }
         sc.close();
 
-        Server server = new Server(daysInMemory, cacheCapacity, daysOnDisk);
+        Server server = new Server(memoryBudgetMB * 1024L * 1024L, cacheCapacity, daysOnDisk);
         server.start(DEFAULT_PORT);
         // Quando start() termina (após shutdown), o programa acaba naturalmente
         System.out.println("Server process ending.");
@@ -1,141 +1,236 @@
 package org.Server;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+import org.Common.SalesSummary;
 
 /**
  * Class that represents the database of the server, including methods for
  * handling users/clients, products and sales.
  * 
- * Mantém os últimos M dias em memória para acesso rápido.
+ * Mantém em memória os dias fechados que cabem num orçamento de bytes,
+ * escolhidos pela frequência e recência de acesso (DayResidency).
  */
 class ServerDatabase {
-    // Configuração: quantos dias manter em memória
-    private final int MAX_DAYS_IN_MEMORY;
-
-    private int currentDay = 0;
 
     private final Dictionary dictionary;
     private final PersistenceManager persistence;
 
-    /* Map que guarda os últimos M dias em memória: dia -> (productId -> vendas) */
-    private final Map<Integer, Map<Integer, List<Venda>>> daysInMemory;
+    /*
+     * Dias fechados em memória (off-heap), limitados por um orçamento de bytes.
+     * Entram no EndDay e quando uma consulta lê um dia do disco.
+     */
+    private final DayResidency daysInMemory;
+
+    /*
+     * Dias fechados que ainda não foram gravados em disco: ficam no heap,
+     * fora do orçamento, até o EndDay terminar o I/O.
+     */
+    private final Map<Integer, DaySales> pendingDays = new ConcurrentHashMap<>();
+
+    /* Leituras de dias do disco: pedidos concorrentes do mesmo dia partilham a leitura */
+    private final SingleFlight<Integer, DayView> dayLoads = new SingleFlight<>();
+
+    /* Leitura antecipada dos dias de consultas longas, numa pool de I/O própria */
+    private static final int IO_THREADS = 4;
+    private final DayPrefetcher prefetcher;
+
+    /*
+     * Dia em curso (ainda não terminado) e as suas vendas: com lock por produto
+     * ou com um buffer por thread de ingestão, conforme a configuração.
+     * O par é imutável e publicado numa só escrita, por isso quem o lê uma vez
+     * vê sempre o buffer do dia que leu.
+     */
+    private record OpenDay(int day, SalesBuffer buffer) {}
+    private volatile OpenDay openDay;
+    private final boolean threadLocalIngestion;
+
+    /*
+     * Resumos dos dias fechados em memória: dia -> (productId -> resumo).
+     * Os restantes dias têm o resumo em disco (orders_day_X.summary).
+     */
+    private final Map<Integer, DaySummary> daySummaries = new ConcurrentHashMap<>();
+
+    /* Somas acumuladas por produto e dia, para somas de N dias em O(1) */
+    private final PrefixSumIndex prefixIndex;
+
+    /* Máximos diários por produto, para o preço máximo de N dias em O(log D) */
+    private final RangeMaxIndex rangeMaxIndex;
+
+    /* Acrescentar um dia aos índices e aos seus logs em disco, pela mesma ordem */
+    private final ReentrantLock indexAppendLock = new ReentrantLock();
 
     /*
-     * Map that stores the actual day's orders (dia em curso, ainda não terminado)
+     * Barreira de mudança de dia: as vendas entram com o read lock (partilhado,
+     * não se bloqueiam entre si) e o endDay/shutdown usam o write lock para
+     * obter uma fotografia atómica do dia.
      */
-    private Map<Integer, List<Venda>> ordersCurDay;
-    private final ReentrantReadWriteLock ordersLock = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock dayBarrier = new ReentrantReadWriteLock();
 
-    /* Map that stores all registered users in the Server */
-    private Map<String, String> users;
-    private final ReentrantLock usersLock = new ReentrantLock();
+    /* Registered users: lock-free logins, registrations persisted to users.log */
+    private final UserRegistry users;
 
-    private final Map<String, Map<Integer, String>> userDictionaries;
-    private final ReentrantReadWriteLock userDictLock = new ReentrantReadWriteLock();
+    /* Utilizadores sem FilterEvents há 30 minutos perdem o dicionário pessoal */
+    private static final long USER_DICTIONARY_IDLE_MS = 30 * 60 * 1000;
+    /* Ids de produtos já enviados a cada utilizador no FilterEvents */
+    private final UserDictionaries userDictionaries = new UserDictionaries(USER_DICTIONARY_IDLE_MS);
 
     private final NotificationManager notificationManager;
 
+    private final ServerMetrics metrics;
+
+    /* Chamado com cada dia fechado e o seu resumo, antes da gravação em disco */
+    private volatile BiConsumer<Integer, DaySummary> dayClosedListener;
+
     /**
      * Default constructor for the ServerDatabase class.
      * 
      * Initializes the PersistenceManager and loads data from disk.
      * 
-     * @param MAX_DAYS_IN_MEMORY Número máximo de dias a manter em memória
+     * @param memoryBudgetBytes Bytes máximos ocupados pelos dias fechados em memória
      * @param MAX_DAYS_ON_DISK Número máximo de dias a manter em disco (0 = sem limite)
+     * @param threadLocalIngestion true para acumular as vendas em buffers por thread
+     * @param metrics Métricas das leituras de dias (memória vs disco)
      */
-    public ServerDatabase(int MAX_DAYS_IN_MEMORY, int MAX_DAYS_ON_DISK) {
+    public ServerDatabase(long memoryBudgetBytes, int MAX_DAYS_ON_DISK, boolean threadLocalIngestion,
+                          ServerMetrics metrics) {
         this.persistence = new PersistenceManager(MAX_DAYS_ON_DISK);
-        this.ordersCurDay = new HashMap<>();
-        this.daysInMemory = new HashMap<>();
-        this.userDictionaries = new HashMap<>();
+        this.metrics = metrics;
+        this.threadLocalIngestion = threadLocalIngestion;
+        this.daysInMemory = new DayResidency(memoryBudgetBytes, daySummaries::remove);
+        metrics.registerGauge("days.resident", () -> daysInMemory.residentDays().size());
+        metrics.registerGauge("days.residentBytes", daysInMemory::getResidentBytes);
+        metrics.registerGauge("days.evictions", daysInMemory::getEvictions);
+        // Memória direta realmente usada (inclui dias despejados ainda não recolhidos pelo GC)
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                metrics.registerGauge("days.directBytes", pool::getMemoryUsed);
+            }
+        }
+        this.prefetcher = new DayPrefetcher(IO_THREADS,
+                day -> pendingDays.containsKey(day) || daysInMemory.contains(day),
+                day -> loadDay(day, true),
+                daysInMemory::hasRoomFor);
 
         // Load persisted data via PersistenceManager
-        this.currentDay = persistence.loadCurrentDay();
-        this.users = persistence.loadUsers();
+        this.openDay = new OpenDay(persistence.loadCurrentDay(), newSalesBuffer());
+        this.users = new UserRegistry(persistence.loadUsers(), persistence.openUsersLog());
         this.dictionary = persistence.loadDictionary();
 
-        this.MAX_DAYS_IN_MEMORY = MAX_DAYS_IN_MEMORY;
-        // Carrega os últimos M dias para memória
+        // Carrega os dias mais recentes que couberem no orçamento
         loadLastDaysToMemory();
 
-        this.notificationManager = new NotificationManager(this.currentDay);
+        int currentDay = this.openDay.day();
+        this.notificationManager = new NotificationManager(currentDay);
+
+        // Índices persistidos (só até ao dia atual); os dias em falta são indexados em background
+        this.prefixIndex = persistence.loadPrefixIndex(currentDay);
+        this.rangeMaxIndex = persistence.loadRangeMaxIndex(currentDay);
+        if (!this.prefixIndex.covers(currentDay) || !this.rangeMaxIndex.covers(currentDay)) {
+            new Thread(this::catchUpIndexes, "IndexRebuild").start();
+        }
 
         // DEBUG
         System.out.println("=== ServerDatabase Loaded ===");
-        System.out.println("currentDay: " + this.currentDay);
+        System.out.println("currentDay: " + currentDay);
         System.out.println("users: " + this.users.size());
         System.out.println("dictionary entries: " + this.dictionary);
-        System.out.println("days in memory: " + this.daysInMemory.keySet());
+        System.out.println("days in memory: " + this.daysInMemory);
+        System.out.println("indexed days: " + this.prefixIndex.getCoveredDays()
+                + " (max: " + this.rangeMaxIndex.getCoveredDays() + ")");
+    }
+
+    /**
+     * Cria o buffer de vendas para um novo dia, conforme a configuração.
+     */
+    private SalesBuffer newSalesBuffer() {
+        return threadLocalIngestion ? new ThreadLocalSalesBuffer() : new StripedSalesBuffer();
     }
 
     /**
-     * Carrega os últimos M dias do disco para memória.
+     * Carrega do disco os dias mais recentes, enquanto couberem no orçamento.
      */
     private void loadLastDaysToMemory() {
-        for (int i = 1; i <= MAX_DAYS_IN_MEMORY; i++) {
-            int dayToLoad = currentDay - i;
-            if (dayToLoad < 0)
+        int currentDay = openDay.day();
+        int oldest = persistence.getOldestRetainedDay(currentDay);
+        for (int day = currentDay - 1; day >= oldest; day--) {
+            DaySales dayData = persistence.deserializeDay(day);
+            if (dayData.isEmpty()) {
+                continue;
+            }
+            if (!daysInMemory.fits(OffHeapDay.residentBytesFor(dayData))) {
                 break;
-
-            loadDayToMemory(dayToLoad);
+            }
+            OffHeapDay offHeap = OffHeapDay.tryCopy(dayData);
+            if (offHeap == null) {
+                break;
+            }
+            daysInMemory.put(day, offHeap);
+            DaySummary summary = persistence.deserializeSummary(day);
+            if (summary != null) {
+                daySummaries.put(day, summary);
+            }
         }
     }
 
     /**
-     * Carrega um dia específico do disco para memória.
-     * 
-     * @param day O dia a carregar
-     * @return true se carregou dados, false se o dia estava vazio/não existe
+     * @return O gestor dos dias em memória (bytes residentes, hit ratio)
      */
-    private boolean loadDayToMemory(int day) {
-        Map<Integer, List<Venda>> dayData = persistence.deserializeDay(day);
-        if (!dayData.isEmpty()) {
-            daysInMemory.put(day, dayData);
-            return true;
-        }
-        return false;
+    public DayResidency getDayResidency() {
+        return daysInMemory;
+    }
+
+    public int getCurrentDay() {
+        return this.openDay.day();
     }
 
     /**
-     * Remove o dia mais antigo da memória.
+     * Grava a cache de agregações (checkpoint no EndDay e no shutdown).
+     * 
+     * @param cache A cache a gravar
      */
-    private void removeOldestDayFromMemory() {
-        if (daysInMemory.isEmpty())
-            return;
-
-        int oldestDay = daysInMemory.keySet().stream()
-                .min(Integer::compareTo)
-                .orElse(-1);
+    public void saveCache(Cache cache) {
+        persistence.saveCache(cache, openDay.day());
+    }
 
-        if (oldestDay >= 0) {
-            daysInMemory.remove(oldestDay);
-            System.out.println("Removed day " + oldestDay + " from memory");
-        }
+    /**
+     * Recarrega a cache gravada, só com os dias fechados ainda em disco.
+     * 
+     * @param cache A cache (vazia) a preencher
+     * @return Número de entradas recarregadas
+     */
+    public int loadCache(Cache cache) {
+        return persistence.loadCache(cache, openDay.day());
     }
 
-    public int getCurrentDay() {
-        ordersLock.readLock().lock();
-        try {
-            return this.currentDay;
-        } finally {
-            ordersLock.readLock().unlock();
-        }
+    /**
+     * Regista quem deve ser avisado sempre que um dia fecha (ex.: aquecimento da cache).
+     * 
+     * @param listener Recebe o dia fechado e o seu resumo
+     */
+    public void setDayClosedListener(BiConsumer<Integer, DaySummary> listener) {
+        this.dayClosedListener = listener;
     }
 
     /**
      * Gets the product ID for a given product name.
      * 
+     * Read-only: an unknown name is not added to the Dictionary (only sales
+     * create new products).
+     * 
      * @param productName The name of the product
-     * @return The product ID, or -1 if not found (note: Dictionary auto-creates)
+     * @return The product ID, or -1 if not found
      */
     public int getProductId(String productName) {
-        return dictionary.get(productName);
+        return dictionary.lookup(productName);
     }
 
     /**
@@ -149,55 +244,36 @@ class ServerDatabase {
     }
 
     /**
-     * Gets the user's personal dictionary.
-     * 
-     * @param username The username to find the dictionary associated.
-     * @return The corresponding personal dictionary
-     */
-    public Map<Integer, String> getUserDictionary(String username) {
-        userDictLock.readLock().lock();
-        try {
-            Map<Integer, String> dict = userDictionaries.get(username);
-            if (dict != null) return dict;
-        } finally {
-            userDictLock.readLock().unlock();
-        }
-
-        userDictLock.writeLock().lock();
-        try {
-            return userDictionaries.computeIfAbsent(username, u -> new HashMap<>());
-        } finally {
-            userDictLock.writeLock().unlock();
-        }
-    }
-
-    /**
-     * Updates the personal dictionary of the user safely using writelock.
-     * 
-     * @param username  The user to update the personal dictionary.
-     * @param updates   New entries in the personal dictionary.
+     * Returns the product ids, among the given ones, whose names the user does
+     * not know yet, and records them as known. If the server does not
+     * recognise what the client knows, the update asks the client to reset.
+     *
+     * @param username      The authenticated user.
+     * @param productIds    The product ids about to be sent to the user.
+     * @param knownCount    How many ids the client claims to know.
+     * @param knownDigest   The DictionaryDigest of the ids the client knows.
+     * @return The ids whose names must be sent, and whether the client must reset its dictionary.
      */
-    public void updateUserDictionary(String username, Map<Integer, String> updates) {
-        userDictLock.writeLock().lock();
-        try {
-            Map<Integer, String> dict = userDictionaries.computeIfAbsent(username, u -> new HashMap<>());
-            dict.putAll(updates);
-        } finally {
-            userDictLock.writeLock().unlock();
-        }
+    public UserDictionaries.Update unknownProductIds(String username, Collection<Integer> productIds, int knownCount, long knownDigest) {
+        return userDictionaries.unknownIds(username, productIds, knownCount, knownDigest);
     }
 
     // Expor metodos do NotificationManager via Database
 
     public boolean checkSimultaneousSales(String p1, String p2) {
-        int id1 = dictionary.get(p1);
-        int id2 = dictionary.get(p2);
+        int id1 = dictionary.lookup(p1);
+        int id2 = dictionary.lookup(p2);
+        if (id1 < 0 || id2 < 0)
+            return false; // Produto nunca vendido
         return notificationManager.checkSimultaneousSales(id1, id2);
     }
 
     public boolean waitForSimultaneousSales(String p1, String p2) throws InterruptedException {
-        int id1 = dictionary.get(p1);
-        int id2 = dictionary.get(p2);
+        int id1 = dictionary.lookup(p1);
+        int id2 = dictionary.lookup(p2);
+        if (id1 < 0 || id2 < 0)
+            // Um produto ainda sem id só o recebe na primeira venda
+            return notificationManager.waitForSimultaneousSales(p1, p2, dictionary::lookup);
         return notificationManager.waitForSimultaneousSales(id1, id2);
     }
 
@@ -223,36 +299,19 @@ class ServerDatabase {
      * @return true if credentials match, false otherwise
      */
     public boolean checkUserCredentials(String username, String password) {
-        this.usersLock.lock();
-        try {
-            String storedPassword = this.users.get(username);
-            if (storedPassword == null) {
-                return false; // User does not exist
-            }
-            return storedPassword.equals(password);
-        } finally {
-            this.usersLock.unlock();
-        }
+        return users.checkCredentials(username, password);
     }
 
     /**
      * Creates a new user in the database.
+     * Returns once the registration is in the users log.
      * 
      * @param username The username of the new user
      * @param password The password of the new user
      * @return true if user created, false if username already exists
      */
     public boolean createUser(String username, String password) {
-        this.usersLock.lock();
-        try {
-            if (this.users.containsKey(username)) {
-                return false; // User already exists
-            }
-            users.put(username, password);
-            return true;
-        } finally {
-            this.usersLock.unlock();
-        }
+        return users.register(username, password);
     }
 
     /**
@@ -264,63 +323,88 @@ class ServerDatabase {
      * @return true if sale record added successfully
      */
     public boolean addSaleRecord(String produto, int quantidade, double preco) {
-        ordersLock.writeLock().lock();
+        dayBarrier.readLock().lock();
         try {
             int id = dictionary.get(produto);
 
-            Venda venda = new Venda(id, quantidade, preco);
-            ordersCurDay.computeIfAbsent(id, k -> new ArrayList<>()).add(venda);
+            openDay.buffer().add(id, quantidade, preco);
 
             notificationManager.registerSale(id);
 
             return true;
         } finally {
-            ordersLock.writeLock().unlock();
+            dayBarrier.readLock().unlock();
         }
     }
 
     public boolean endDay() {
-        Map<Integer, List<Venda>> dataToSave;
+        DaySales dataToSave;
+        DaySummary summary;
         int dayToSave;
         int newDay;
 
-        ordersLock.writeLock().lock();
+        dayBarrier.writeLock().lock();
         try {
             // 1. "Swap" atómico do estado
-            dataToSave = this.ordersCurDay;
-            dayToSave = this.currentDay;
-
-            // Reseta o estado global para o novo dia
-            this.ordersCurDay = new HashMap<>();
-            this.currentDay++;
-            newDay = this.currentDay;
+            OpenDay closing = this.openDay;
+            dataToSave = closing.buffer().snapshot();
+            dayToSave = closing.day();
+            summary = closing.buffer().toDaySummary();
 
-            // 2. Adiciona o dia terminado à memória (mesmo se vazio)
-            daysInMemory.put(dayToSave, dataToSave);
+            // 2. O dia terminado fica no heap até ser gravado; o resumo fica em memória.
+            // Publicados antes de avançar o dia, para as consultas do novo dia os verem.
+            pendingDays.put(dayToSave, dataToSave);
+            daySummaries.put(dayToSave, summary);
 
-            // 3. Remove o dia mais antigo se excedemos M dias
-            if (daysInMemory.size() > MAX_DAYS_IN_MEMORY) {
-                removeOldestDayFromMemory();
-            }
+            // Reseta o estado global para o novo dia: dia e buffer numa só escrita
+            newDay = dayToSave + 1;
+            this.openDay = new OpenDay(newDay, newSalesBuffer());
 
-            // 4. Avança o dia no NotificationManager
+            // 3. Avança o dia no NotificationManager
             notificationManager.advanceDay();
 
-            System.out.println("Dia avançado para: " + this.currentDay);
-            System.out.println("Dias em memória: " + this.daysInMemory.keySet());
+            System.out.println("Dia avançado para: " + newDay);
 
         } finally {
-            ordersLock.writeLock().unlock();
+            dayBarrier.writeLock().unlock();
+        }
+
+        // Os índices só cobrem o dia depois da gravação: até lá as consultas usam a cache
+        BiConsumer<Integer, DaySummary> listener = dayClosedListener;
+        if (listener != null) {
+            listener.accept(dayToSave, summary);
         }
 
-        // 5. Operação de I/O pesada feita SEM bloquear os clientes
+        // 4. Operação de I/O pesada feita SEM bloquear os clientes
         try {
             persistence.serializeDay(dataToSave, dayToSave);
+            persistence.serializeSummary(summary, dayToSave);
+            catchUpIndexes();
+
+            // Gravado: move o dia para fora do heap, se couber no orçamento
+            if (!dataToSave.isEmpty()) {
+                OffHeapDay offHeap = OffHeapDay.tryCopy(dataToSave);
+                if (offHeap != null) {
+                    daysInMemory.put(dayToSave, offHeap);
+                }
+            }
+            pendingDays.remove(dayToSave);
+
             persistence.saveCurrentDay(newDay);
             persistence.saveDictionary(dictionary);
             
-            // 6. Limpa dias antigos do disco
+            // 5. Limpa dias antigos do disco (e da memória)
             persistence.cleanupOldDays(newDay);
+            int oldestRetained = persistence.getOldestRetainedDay(newDay);
+            for (int day : daysInMemory.residentDays()) {
+                if (day < oldestRetained) {
+                    daysInMemory.remove(day);
+                    daySummaries.remove(day);
+                }
+            }
+
+            System.out.println("Dias em memória: " + daysInMemory
+                    + ", lidos antecipadamente: " + prefetcher.getPrefetched());
             
             return true;
         } catch (IOException e) {
@@ -330,76 +414,152 @@ class ServerDatabase {
     }
 
     public int shutdown() {
-        ordersLock.writeLock().lock();
-        usersLock.lock();
+        prefetcher.shutdown();
+
+        dayBarrier.writeLock().lock();
 
         try {
             // ----- Secção crítica protegida -----
+            OpenDay current = this.openDay;
 
-            persistence.saveCurrentDay(currentDay);
+            persistence.saveCurrentDay(current.day());
             persistence.saveDictionary(dictionary);
 
             // Só serializa se houver dados no dia atual
-            if (!ordersCurDay.isEmpty()) {
+            if (!current.buffer().isEmpty()) {
                 try {
-                    persistence.serializeDay(ordersCurDay, currentDay);
+                    persistence.serializeDay(current.buffer().snapshot(), current.day());
                 } catch (IOException e) {
                     System.err.println("Error saving current day orders: " + e.getMessage());
                 }
             }
 
-            persistence.saveUsers(users);
+            // Snapshot dos utilizadores; o log fica vazio depois
+            users.close();
+            persistence.saveUsers(users.snapshot());
 
             // Acorda todos os clientes à espera de notificações
             notificationManager.shutdown();
 
-            return currentDay;
+            return current.day();
 
         } finally {
-            // FASE DE ENCOLHIMENTO: libertar locks (ordem inversa)
-            usersLock.unlock();
-            ordersLock.writeLock().unlock();
+            dayBarrier.writeLock().unlock();
         }
     }
 
     /**
-     * Retrieves data from the last N days.
-     * Usa memória quando disponível, fallback para disco.
+     * Fotografia das vendas do dia em curso, obtida sem bloquear as vendas.
+     *
+     * O dia e o buffer vêm de uma só leitura do OpenDay, que o EndDay publica
+     * inteiro: o buffer lido é sempre o do dia lido. Se o dia pedido já fechou,
+     * usa-se o dia fechado (publicado antes do novo OpenDay).
+     *
+     * @param day O dia em curso visto pelo chamador
+     * @return As vendas desse dia até agora
+     */
+    public DayView getOpenDaySnapshot(int day) {
+        OpenDay open = this.openDay;
+        if (open.day() == day) {
+            return open.buffer().readSnapshot();
+        }
+        return open.day() > day ? getDayData(day) : new DaySales();
+    }
+
+    /**
+     * Devolve os totais do produto no dia em curso, em O(1).
      * 
-     * @param n The number of days to look back.
-     * @return A map containing the combined sales data.
+     * @param productName O nome do produto
+     * @return Os totais de hoje até agora (SalesSummary.EMPTY se não houve vendas)
      */
-    public Map<Integer, List<Venda>> getNDaysData(int n) {
-        Map<Integer, List<Venda>> combinedData = new HashMap<>();
+    public SalesSummary getTodaySummary(String productName) {
+        int productId = dictionary.lookup(productName);
+        return productId < 0 ? SalesSummary.EMPTY : openDay.buffer().summary(productId);
+    }
 
-        ordersLock.readLock().lock();
-        int currentDaySnapshot;
-        try {
-            currentDaySnapshot = this.currentDay;
-        } finally {
-            ordersLock.readLock().unlock();
+    /**
+     * Devolve o resumo de um dia fechado.
+     * Primeiro verifica memória, depois lê só o ficheiro de resumo do disco.
+     * 
+     * @param day O dia pretendido
+     * @return O resumo do dia, ou null se não existir (dias anteriores aos resumos)
+     */
+    public DaySummary getDaySummary(int day) {
+        long start = System.nanoTime();
+        DaySummary inMemory = daySummaries.get(day);
+        if (inMemory != null) {
+            metrics.recordDayRead(ServerMetrics.DayRead.SUMMARY_MEMORY, System.nanoTime() - start);
+            return inMemory;
         }
+        DaySummary fromDisk = persistence.deserializeSummary(day);
+        metrics.recordDayRead(ServerMetrics.DayRead.SUMMARY_DISK, System.nanoTime() - start);
+        return fromDisk;
+    }
 
-        for (int i = 1; i <= n; i++) {
-            int dayToLoad = currentDaySnapshot - i;
-            if (dayToLoad < 0)
-                break;
+    /**
+     * @return O índice de somas acumuladas (pode ainda não cobrir todos os dias)
+     */
+    public PrefixSumIndex getPrefixIndex() {
+        return prefixIndex;
+    }
 
-            // Tenta primeiro da memória, senão vai ao disco
-            Map<Integer, List<Venda>> dayData = getDayData(dayToLoad);
+    /**
+     * @return O índice de máximos por intervalo (pode ainda não cobrir todos os dias)
+     */
+    public RangeMaxIndex getRangeMaxIndex() {
+        return rangeMaxIndex;
+    }
 
-            for (Map.Entry<Integer, List<Venda>> entry : dayData.entrySet()) {
-                int productId = entry.getKey();
-                List<Venda> pastSales = entry.getValue();
+    /**
+     * @param currentDay O dia atual
+     * @return O dia mais antigo ainda disponível em disco
+     */
+    public int getOldestRetainedDay(int currentDay) {
+        return persistence.getOldestRetainedDay(currentDay);
+    }
 
-                combinedData.merge(productId, pastSales, (existingSales, newSales) -> {
-                    existingSales.addAll(newSales);
-                    return existingSales;
-                });
+    /**
+     * Acrescenta aos índices todos os dias fechados que ainda não indexam.
+     * Usa os resumos dos dias e, para dias antigos sem resumo, calcula-o a
+     * partir das vendas e grava-o. Pode correr em concorrência com o EndDay:
+     * cada dia só é acrescentado uma vez, e só esse dia é acrescentado aos
+     * logs dos índices em disco.
+     */
+    private void catchUpIndexes() {
+        int day;
+        while ((day = Math.min(prefixIndex.getCoveredDays(), rangeMaxIndex.getCoveredDays())) < openDay.day()) {
+            DaySummary summary = getDaySummary(day);
+            if (summary == null) {
+                DayView dayData = getDayData(day);
+                summary = DaySummary.of(dayData);
+                if (!dayData.isEmpty()) {
+                    try {
+                        persistence.serializeSummary(summary, day);
+                    } catch (IOException e) {
+                        System.err.println("Erro ao gravar resumo do dia " + day + ": " + e.getMessage());
+                    }
+                }
             }
+            appendToIndexes(day, summary);
         }
+    }
 
-        return combinedData;
+    /**
+     * Acrescenta um dia fechado aos índices e grava só esse dia nos seus logs.
+     * O lock garante que os logs recebem os dias pela mesma ordem dos índices.
+     */
+    private void appendToIndexes(int day, DaySummary summary) {
+        indexAppendLock.lock();
+        try {
+            if (prefixIndex.appendDay(day, summary)) {
+                persistence.appendPrefixIndexDay(day, summary);
+            }
+            if (rangeMaxIndex.appendDay(day, summary)) {
+                persistence.appendRangeMaxIndexDay(day, summary);
+            }
+        } finally {
+            indexAppendLock.unlock();
+        }
     }
 
     /**
@@ -409,15 +569,75 @@ class ServerDatabase {
      * @param day O dia a obter
      * @return Os dados do dia (pode ser vazio)
      */
-    public Map<Integer, List<Venda>> getDayData(int day) {
-        // 1. Verifica se está em memória
-        Map<Integer, List<Venda>> inMemory = daysInMemory.get(day);
+    public DayView getDayData(int day) {
+        long start = System.nanoTime();
+
+        // 1. Dia acabado de fechar, ainda a ser gravado
+        DaySales pending = pendingDays.get(day);
+        if (pending != null) {
+            metrics.recordDayRead(ServerMetrics.DayRead.DAY_MEMORY, System.nanoTime() - start);
+            return pending;
+        }
+
+        // 2. Verifica se está em memória
+        DayView inMemory = daysInMemory.get(day);
         if (inMemory != null) {
+            metrics.recordDayRead(ServerMetrics.DayRead.DAY_MEMORY, System.nanoTime() - start);
             return inMemory;
         }
 
-        // 2. Fallback: carrega do disco
-        return persistence.deserializeDay(day);
+        // 3. Fallback: carrega do disco (ou junta-se a uma leitura já em curso)
+        DayView fromDisk = loadDay(day);
+        metrics.recordDayRead(ServerMetrics.DayRead.DAY_DISK, System.nanoTime() - start);
+        return fromDisk;
+    }
+
+    /**
+     * Lê um dia do disco e tenta mantê-lo em memória.
+     * Leituras concorrentes do mesmo dia (consultas ou leitura antecipada)
+     * são feitas uma só vez.
+     */
+    private DayView loadDay(int day) {
+        return loadDay(day, false);
+    }
+
+    /**
+     * @param readAhead true para um dia lido antecipadamente (ainda não pedido
+     *                  pela consulta): só fica em memória se couber sem despejar outros dias
+     */
+    private DayView loadDay(int day, boolean readAhead) {
+        return dayLoads.execute(day, () -> {
+            OffHeapDay resident = daysInMemory.peek(day);
+            if (resident != null) {
+                return resident;
+            }
+            DaySales fromDisk = persistence.deserializeDay(day);
+            if (fromDisk.isEmpty()
+                    || (readAhead && !daysInMemory.fits(OffHeapDay.residentBytesFor(fromDisk)))) {
+                return fromDisk;
+            }
+            OffHeapDay offHeap = OffHeapDay.tryCopy(fromDisk);
+            if (offHeap == null) {
+                return fromDisk;
+            }
+            if (readAhead) {
+                daysInMemory.putIfFits(day, offHeap);
+            } else {
+                daysInMemory.put(day, offHeap);
+            }
+            return offHeap;
+        });
+    }
+
+    /**
+     * Começa a ler em background os dias da janela dos últimos N dias que não
+     * estão em memória. Deve ser chamado antes de percorrer a janela.
+     *
+     * @param days Número de dias da janela
+     * @param currentDay O dia atual
+     */
+    public void prefetchDays(int days, int currentDay) {
+        prefetcher.onScan(currentDay - days, currentDay, persistence.getOldestRetainedDay(currentDay));
     }
 
 }
@@ -0,0 +1,238 @@
+package org.Server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Métricas da cache e do armazenamento, para afinar cacheCapacity e o
+ * orçamento de dias em memória.
+ *
+ * Conta, com histogramas de latência:
+ *  - acertos e falhas da Cache por métrica (quantidade, volume, preço médio, preço máximo);
+ *  - leituras de dias (e de resumos de dias) servidas da memória ou do disco;
+ *  - consultas respondidas pelos índices, que não passam pela Cache.
+ * Outros valores (despejos da cache e dos dias em memória, ...) são lidos
+ * no momento do relatório através de gauges registados pelos componentes.
+ *
+ * Os contadores são LongAdder, pelo que registar não bloqueia as consultas.
+ * Disponível pelo pedido de administração Metrics e numa linha de log periódica.
+ */
+public class ServerMetrics {
+
+    public enum Metric { QUANTITY, VOLUME, AVERAGE_PRICE, MAX_PRICE }
+
+    public enum DayRead { DAY_MEMORY, DAY_DISK, SUMMARY_MEMORY, SUMMARY_DISK }
+
+    /**
+     * Histograma de latências com baldes em potências de 2 de microssegundos
+     * (balde i: até 2^i µs; o último acumula o resto).
+     */
+    static class LatencyHistogram {
+        private static final int BUCKETS = 24; // até ~8 s
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        LatencyHistogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            long micros = Math.max(1, nanos / 1000);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+            buckets[bucket].increment();
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        /**
+         * @return Limite superior (µs) do balde que contém o percentil p (0 a 1)
+         */
+        long percentileMicros(double p) {
+            long total = count();
+            if (total == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(p * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i].sum();
+                if (seen >= target) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (BUCKETS - 1);
+        }
+
+        @Override
+        public String toString() {
+            long n = count();
+            if (n == 0) {
+                return "n=0";
+            }
+            return String.format("n=%d avg=%dus p50<=%dus p99<=%dus", n, totalNanos.sum() / n / 1000,
+                    percentileMicros(0.50), percentileMicros(0.99));
+        }
+    }
+
+    private final LatencyHistogram[] cacheHits = histograms(Metric.values().length);
+    private final LatencyHistogram[] cacheMisses = histograms(Metric.values().length);
+    private final LatencyHistogram[] dayReads = histograms(DayRead.values().length);
+
+    private final LongAdder indexQueries = new LongAdder();
+
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private final ReentrantLock gaugesLock = new ReentrantLock();
+
+    // Atividade no último log periódico, para não repetir linhas sem alterações
+    private long lastLoggedActivity = -1;
+
+    private static LatencyHistogram[] histograms(int n) {
+        LatencyHistogram[] result = new LatencyHistogram[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = new LatencyHistogram();
+        }
+        return result;
+    }
+
+    /**
+     * Regista uma consulta à Cache (incluindo o cálculo, numa falha).
+     */
+    public void recordCacheLookup(Metric metric, boolean hit, long nanos) {
+        (hit ? cacheHits : cacheMisses)[metric.ordinal()].record(nanos);
+    }
+
+    /**
+     * Regista uma consulta respondida pelo índice de somas ou de máximos.
+     */
+    public void recordIndexQuery() {
+        indexQueries.increment();
+    }
+
+    /**
+     * Regista a leitura de um dia ou do resumo de um dia.
+     */
+    public void recordDayRead(DayRead source, long nanos) {
+        dayReads[source.ordinal()].record(nanos);
+    }
+
+    /**
+     * Regista um valor lido no momento do relatório (ex.: despejos da cache).
+     */
+    public void registerGauge(String name, LongSupplier value) {
+        gaugesLock.lock();
+        try {
+            gauges.put(name, value);
+        } finally {
+            gaugesLock.unlock();
+        }
+    }
+
+    private long totalHits() {
+        long total = 0;
+        for (LatencyHistogram h : cacheHits) {
+            total += h.count();
+        }
+        return total;
+    }
+
+    private long totalMisses() {
+        long total = 0;
+        for (LatencyHistogram h : cacheMisses) {
+            total += h.count();
+        }
+        return total;
+    }
+
+    private static String ratio(long hits, long total) {
+        return total == 0 ? "-" : String.format("%.1f%%", 100.0 * hits / total);
+    }
+
+    private String gaugesLine() {
+        StringBuilder sb = new StringBuilder();
+        gaugesLock.lock();
+        try {
+            for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+                sb.append(' ').append(gauge.getKey()).append('=').append(gauge.getValue().getAsLong());
+            }
+        } finally {
+            gaugesLock.unlock();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Relatório completo (uma linha por contador/histograma)
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder("=== Server metrics ===\n");
+        long hits = totalHits();
+        long misses = totalMisses();
+        sb.append("cache: hits=").append(hits).append(" misses=").append(misses)
+          .append(" hit ratio=").append(ratio(hits, hits + misses)).append('\n');
+        for (Metric metric : Metric.values()) {
+            LatencyHistogram hit = cacheHits[metric.ordinal()];
+            LatencyHistogram miss = cacheMisses[metric.ordinal()];
+            sb.append("  ").append(metric).append(": hit ratio=")
+              .append(ratio(hit.count(), hit.count() + miss.count()))
+              .append(" | hits ").append(hit).append(" | misses ").append(miss).append('\n');
+        }
+        sb.append("index queries (no cache): ").append(indexQueries.sum()).append('\n');
+        sb.append("day reads:\n");
+        for (DayRead source : DayRead.values()) {
+            sb.append("  ").append(source).append(": ").append(dayReads[source.ordinal()]).append('\n');
+        }
+        sb.append("gauges:").append(gaugesLine()).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * @return Resumo numa linha, para o log periódico
+     */
+    public String summaryLine() {
+        long hits = totalHits();
+        long misses = totalMisses();
+        long memory = dayReads[DayRead.DAY_MEMORY.ordinal()].count();
+        long disk = dayReads[DayRead.DAY_DISK.ordinal()].count();
+        return "[metrics] cache hits=" + hits + " misses=" + misses + " (" + ratio(hits, hits + misses) + ")"
+                + " index=" + indexQueries.sum()
+                + " day reads memory=" + memory + " disk=" + disk
+                + " disk p99<=" + dayReads[DayRead.DAY_DISK.ordinal()].percentileMicros(0.99) + "us"
+                + gaugesLine();
+    }
+
+    /**
+     * Escreve summaryLine a cada intervalMs numa thread daemon, só quando houve atividade.
+     */
+    public void startPeriodicLog(long intervalMs) {
+        Thread logger = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(intervalMs);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long activity = totalHits() + totalMisses() + indexQueries.sum();
+                for (LatencyHistogram h : dayReads) {
+                    activity += h.count();
+                }
+                if (activity != lastLoggedActivity) {
+                    lastLoggedActivity = activity;
+                    System.out.println(summaryLine());
+                }
+            }
+        }, "MetricsLog");
+        logger.setDaemon(true);
+        logger.start();
+    }
+}
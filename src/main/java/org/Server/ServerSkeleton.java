@@ -2,13 +2,14 @@ package org.Server;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.Common.FilteredEvents;
 import org.Common.IAmazUM;
+import org.Common.SalesSummary;
+import org.Utils.RequestType;
 
 /**
  * Skeleton do servidor - implementação da interface IAmazUM com a lógica real.
@@ -22,16 +23,36 @@ public class ServerSkeleton implements IAmazUM {
 
     private final ServerDatabase database;
     private final Cache cache;
+    private final CacheWarmer warmer;
+    private final ServerMetrics metrics;
+
+    // Chaves para coalescência de consultas idênticas concorrentes
+    private record QueryKey(RequestType type, int productId, int days, int currentDay) {}
+    private record EventsKey(List<Integer> productIds, int days, int currentDay) {}
+
+    private final SingleFlight<QueryKey, Number> aggregateFlights = new SingleFlight<>();
+    private final SingleFlight<EventsKey, Map<Integer, List<FilteredEvents.Event>>> eventsFlights = new SingleFlight<>();
+
+    // Caminho fork/join para consultas sobre muitos dias (e produtos)
+    private final ParallelScan parallel;
 
     /**
      * Cria um novo ServerSkeleton.
      * 
      * @param database Base de dados do servidor
      * @param cache Cache para operações de consulta
+     * @param parallelThreshold Custo (dias x produtos) a partir do qual as consultas correm em paralelo; 0 desativa
+     * @param warmer Aquecimento da cache no fim de cada dia
+     * @param metrics Métricas da cache e do armazenamento
      */
-    public ServerSkeleton(ServerDatabase database, Cache cache) {
+    public ServerSkeleton(ServerDatabase database, Cache cache, int parallelThreshold, CacheWarmer warmer,
+                          ServerMetrics metrics) {
         this.database = database;
         this.cache = cache;
+        this.warmer = warmer;
+        this.metrics = metrics;
+        database.setDayClosedListener(warmer::warm);
+        this.parallel = new ParallelScan(parallelThreshold);
     }
 
     // ==================== Autenticação ====================
@@ -57,37 +78,104 @@ public class ServerSkeleton implements IAmazUM {
 
     @Override
     public double getSalesAveragePrice(String productName, int days) throws IOException {
-        return getAveragePrice(productName, days);
+        int productId = database.getProductId(productName);
+        if (productId < 0) {
+            return 0.0; // Produto nunca vendido: não chega à cache
+        }
+        warmer.recordQuery(productId);
+        int currentDay = database.getCurrentDay();
+        QueryKey key = new QueryKey(RequestType.SalesAveragePrice, productId, days, currentDay);
+        return aggregateFlights.execute(key, () -> getAveragePrice(productId, days, currentDay)).doubleValue();
     }
 
     @Override
     public int getSalesQuantity(String productName, int days) throws IOException {
-        return getTotalQuantitySold(productName, days);
+        int productId = database.getProductId(productName);
+        if (productId < 0) {
+            return 0; // Produto nunca vendido: não chega à cache
+        }
+        warmer.recordQuery(productId);
+        int currentDay = database.getCurrentDay();
+        QueryKey key = new QueryKey(RequestType.SalesQuantity, productId, days, currentDay);
+        return aggregateFlights.execute(key, () -> getTotalQuantitySold(productId, days, currentDay)).intValue();
     }
 
     @Override
     public double getSalesVolume(String productName, int days) throws IOException {
-        return getTotalSalesVolume(productName, days);
+        int productId = database.getProductId(productName);
+        if (productId < 0) {
+            return 0.0; // Produto nunca vendido: não chega à cache
+        }
+        warmer.recordQuery(productId);
+        int currentDay = database.getCurrentDay();
+        QueryKey key = new QueryKey(RequestType.SalesVolume, productId, days, currentDay);
+        return aggregateFlights.execute(key, () -> getTotalSalesVolume(productId, days, currentDay)).doubleValue();
     }
 
     @Override
     public double getSalesMaxPrice(String productName, int days) throws IOException {
-        return getMaxPrice(productName, days);
+        int productId = database.getProductId(productName);
+        if (productId < 0) {
+            return 0.0; // Produto nunca vendido: não chega à cache
+        }
+        warmer.recordQuery(productId);
+        int currentDay = database.getCurrentDay();
+        QueryKey key = new QueryKey(RequestType.SalesMaxPrice, productId, days, currentDay);
+        return aggregateFlights.execute(key, () -> getMaxPrice(productId, days, currentDay)).doubleValue();
+    }
+
+    @Override
+    public SalesSummary getTodaySummary(String productName) throws IOException {
+        return database.getTodaySummary(productName);
+    }
+
+    /**
+     * @return Número de consultas que reaproveitaram um cálculo idêntico em curso
+     */
+    public long getCoalescedQueries() {
+        return aggregateFlights.getCoalesced() + eventsFlights.getCoalesced();
+    }
+
+    /**
+     * @return Número de consultas efetivamente calculadas
+     */
+    public long getExecutedQueries() {
+        return aggregateFlights.getExecuted() + eventsFlights.getExecuted();
     }
 
     // ==================== Query Operations ====================
     
     /**
      * Calculates the average price per unit for a product over the last N days.
-     * Usa volume/quantidade para calcular a média.
+     * Usa volume/quantidade para calcular a média, com o índice de somas
+     * acumuladas quando este já cobre todos os dias fechados.
      * 
-     * @param productName The name of the product
+     * @param productId The id of the product
      * @param days Number of past days to consider
+     * @param currentDay The current day the window is relative to
      * @return Average price per unit, or 0.0 if no sales found
      */
-    private double getAveragePrice(String productName, int days) {
-        int currentDay = database.getCurrentDay();
-        
+    private double getAveragePrice(int productId, int days, int currentDay) {
+        PrefixSumIndex index = database.getPrefixIndex();
+        if (index.covers(currentDay)) {
+            int from = firstDayOfWindow(days, currentDay);
+            recordIndexQuery(from, currentDay);
+            long quantity = index.quantityBetween(productId, from, currentDay);
+            return quantity == 0 ? 0.0 : index.volumeBetween(productId, from, currentDay) / quantity;
+        }
+
+        int from = Math.max(0, currentDay - days);
+        if (parallel.shouldParallelize(currentDay - from, 1)) {
+            double[] totals = parallel.reduceDays(from, currentDay,
+                    day -> {
+                        SalesSummary summary = getSummaryForDay(day, productId, ServerMetrics.Metric.AVERAGE_PRICE);
+                        return new double[] { summary.volume(), summary.quantity() };
+                    },
+                    (a, b) -> new double[] { a[0] + b[0], a[1] + b[1] },
+                    new double[2]);
+            return totals[1] == 0 ? 0.0 : totals[0] / totals[1];
+        }
+
         double totalVolume = 0.0;
         int totalQuantity = 0;
         
@@ -95,9 +183,10 @@ public class ServerSkeleton implements IAmazUM {
             int day = currentDay - i;
             if (day < 0) break;
             
-            // Usa as agregações cacheadas
-            totalVolume += getVolumeForDay(day, productName);
-            totalQuantity += getQuantityForDay(day, productName);
+            // Usa as agregações cacheadas (volume e quantidade da mesma entrada)
+            SalesSummary summary = getSummaryForDay(day, productId, ServerMetrics.Metric.AVERAGE_PRICE);
+            totalVolume += summary.volume();
+            totalQuantity += summary.quantity();
         }
 
         return totalQuantity == 0 ? 0.0 : totalVolume / totalQuantity;
@@ -105,21 +194,33 @@ public class ServerSkeleton implements IAmazUM {
 
     /**
      * Finds the maximum unit price for a product over the last N days.
+     * O(log D) com o índice de máximos por intervalo; senão percorre dia a dia.
      * 
-     * @param productName The name of the product
+     * @param productId The id of the product
      * @param days Number of past days to consider
+     * @param currentDay The current day the window is relative to
      * @return Maximum unit price, or 0.0 if no sales found
      */
-    private double getMaxPrice(String productName, int days) {
-        int currentDay = database.getCurrentDay();
-        
+    private double getMaxPrice(int productId, int days, int currentDay) {
+        RangeMaxIndex index = database.getRangeMaxIndex();
+        if (index.covers(currentDay)) {
+            int from = firstDayOfWindow(days, currentDay);
+            recordIndexQuery(from, currentDay);
+            return index.maxPriceBetween(productId, from, currentDay);
+        }
+
+        int from = Math.max(0, currentDay - days);
+        if (parallel.shouldParallelize(currentDay - from, 1)) {
+            return parallel.reduceDays(from, currentDay, day -> getMaxPriceForDay(day, productId), Math::max, 0.0);
+        }
+
         double maxPrice = 0.0;
         
         for (int i = 1; i <= days; i++) {
             int day = currentDay - i;
             if (day < 0) break;
             
-            double dayMax = getMaxPriceForDay(day, productName);
+            double dayMax = getMaxPriceForDay(day, productId);
             if (dayMax > maxPrice) {
                 maxPrice = dayMax;
             }
@@ -130,21 +231,33 @@ public class ServerSkeleton implements IAmazUM {
 
     /**
      * Calculates the total quantity sold for a product over the last N days.
+     * O(1) com o índice de somas acumuladas; senão soma dia a dia.
      * 
-     * @param productName The name of the product
+     * @param productId The id of the product
      * @param days Number of past days to consider
+     * @param currentDay The current day the window is relative to
      * @return Total quantity sold, or 0 if no sales found
      */
-    private int getTotalQuantitySold(String productName, int days) {
-        int currentDay = database.getCurrentDay();
-        
+    private int getTotalQuantitySold(int productId, int days, int currentDay) {
+        PrefixSumIndex index = database.getPrefixIndex();
+        if (index.covers(currentDay)) {
+            int from = firstDayOfWindow(days, currentDay);
+            recordIndexQuery(from, currentDay);
+            return (int) index.quantityBetween(productId, from, currentDay);
+        }
+
+        int from = Math.max(0, currentDay - days);
+        if (parallel.shouldParallelize(currentDay - from, 1)) {
+            return parallel.reduceDays(from, currentDay, day -> getQuantityForDay(day, productId), Integer::sum, 0);
+        }
+
         int totalQuantity = 0;
         
         for (int i = 1; i <= days; i++) {
             int day = currentDay - i;
             if (day < 0) break;
             
-            totalQuantity += getQuantityForDay(day, productName);
+            totalQuantity += getQuantityForDay(day, productId);
         }
         
         return totalQuantity;
@@ -152,116 +265,96 @@ public class ServerSkeleton implements IAmazUM {
 
     /**
      * Calculates the total sales volume (revenue) for a product over the last N days.
+     * O(1) com o índice de somas acumuladas; senão soma dia a dia.
      * 
-     * @param productName The name of the product
+     * @param productId The id of the product
      * @param days Number of past days to consider
+     * @param currentDay The current day the window is relative to
      * @return Total sales volume, or 0.0 if no sales found
      */
-    private double getTotalSalesVolume(String productName, int days) {
-        int currentDay = database.getCurrentDay();
-        
+    private double getTotalSalesVolume(int productId, int days, int currentDay) {
+        PrefixSumIndex index = database.getPrefixIndex();
+        if (index.covers(currentDay)) {
+            int from = firstDayOfWindow(days, currentDay);
+            recordIndexQuery(from, currentDay);
+            return index.volumeBetween(productId, from, currentDay);
+        }
+
+        int from = Math.max(0, currentDay - days);
+        if (parallel.shouldParallelize(currentDay - from, 1)) {
+            return parallel.reduceDays(from, currentDay, day -> getVolumeForDay(day, productId), Double::sum, 0.0);
+        }
+
         double totalVolume = 0.0;
         
         for (int i = 1; i <= days; i++) {
             int day = currentDay - i;
             if (day < 0) break;
             
-            totalVolume += getVolumeForDay(day, productName);
+            totalVolume += getVolumeForDay(day, productId);
         }
         
         return totalVolume;
     }
     
-    // ==================== Métodos auxiliares com Cache ====================
-    
     /**
-     * Obtém a quantidade vendida de um produto num dia específico.
-     * Verifica cache primeiro, senão calcula e guarda.
+     * Primeiro dia da janela dos últimos N dias, limitado aos dias retidos em disco.
      */
-    private int getQuantityForDay(int day, String productName) {
-        // 1. Verifica cache
-        Integer cached = cache.getQuantidade(day, productName);
-        if (cached != null) {
-            return cached;
-        }
-        
-        // 2. Cache miss - calcula a partir dos dados do dia
-        int productId = database.getProductId(productName);
-        Map<Integer, List<Venda>> dayData = database.getDayData(day);
-        List<Venda> vendas = dayData.get(productId);
-        
-        int quantity = 0;
-        if (vendas != null) {
-            for (Venda v : vendas) {
-                quantity += v.getQuantidade();
-            }
-        }
-        
-        // 3. Guarda na cache para próximas consultas
-        cache.setQuantidade(day, productName, quantity);
-        
-        return quantity;
+    private int firstDayOfWindow(int days, int currentDay) {
+        return Math.max(database.getOldestRetainedDay(currentDay), currentDay - days);
     }
-    
+
     /**
-     * Obtém o volume de vendas de um produto num dia específico.
-     * Verifica cache primeiro, senão calcula e guarda.
+     * Regista uma consulta respondida por um índice, nas métricas e no aquecimento da cache.
      */
-    private double getVolumeForDay(int day, String productName) {
-        // 1. Verifica cache
-        Double cached = cache.getVolume(day, productName);
-        if (cached != null) {
-            return cached;
-        }
-        
-        // 2. Cache miss - calcula
-        int productId = database.getProductId(productName);
-        Map<Integer, List<Venda>> dayData = database.getDayData(day);
-        List<Venda> vendas = dayData.get(productId);
-        
-        double volume = 0.0;
-        if (vendas != null) {
-            for (Venda v : vendas) {
-                volume += v.getPreco();
-            }
-        }
-        
-        // 3. Guarda na cache
-        cache.setVolume(day, productName, volume);
-        
-        return volume;
+    private void recordIndexQuery(int from, int currentDay) {
+        metrics.recordIndexQuery();
+        warmer.recordIndexQuery(from, currentDay);
     }
+
+    // ==================== Métodos auxiliares com Cache ====================
     
     /**
-     * Obtém o preço máximo unitário de um produto num dia específico.
-     * Verifica cache primeiro, senão calcula e guarda.
+     * Obtém o resumo (contagem, quantidade, volume e preço unitário máximo) de
+     * um produto num dia específico.
+     * Verifica cache primeiro; numa falha calcula as quatro métricas de uma vez
+     * e guarda a entrada completa, pelo que as outras métricas do mesmo dia já
+     * não voltam a ler as vendas.
      */
-    private double getMaxPriceForDay(int day, String productName) {
+    private SalesSummary getSummaryForDay(int day, int productId, ServerMetrics.Metric metric) {
+        long start = System.nanoTime();
+
         // 1. Verifica cache
-        Double cached = cache.getMaxPrice(day, productName);
+        SalesSummary cached = cache.get(day, productId);
+        warmer.recordLookup(day, cached != null);
         if (cached != null) {
+            metrics.recordCacheLookup(metric, true, System.nanoTime() - start);
             return cached;
         }
-        
-        // 2. Cache miss - calcula
-        int productId = database.getProductId(productName);
-        Map<Integer, List<Venda>> dayData = database.getDayData(day);
-        List<Venda> vendas = dayData.get(productId);
-        
-        double maxPrice = 0.0;
-        if (vendas != null) {
-            for (Venda v : vendas) {
-                double unitPrice = v.getPreco() / v.getQuantidade();
-                if (unitPrice > maxPrice) {
-                    maxPrice = unitPrice;
-                }
-            }
-        }
-        
-        // 3. Guarda na cache
-        cache.setMaxPrice(day, productName, maxPrice);
-        
-        return maxPrice;
+
+        // 2. Cache miss - usa o resumo do dia se existir, senão calcula a partir dos dados
+        DaySummary daySummary = database.getDaySummary(day);
+        SalesSummary summary = daySummary != null
+                ? daySummary.get(productId)
+                : DaySummary.summarize(database.getDayData(day).get(productId));
+
+        // 3. Guarda na cache para próximas consultas
+        cache.put(day, productId, summary);
+
+        metrics.recordCacheLookup(metric, false, System.nanoTime() - start);
+        return summary;
+    }
+
+    private int getQuantityForDay(int day, int productId) {
+        return getSummaryForDay(day, productId, ServerMetrics.Metric.QUANTITY).quantity();
+    }
+
+    private double getVolumeForDay(int day, int productId) {
+        return getSummaryForDay(day, productId, ServerMetrics.Metric.VOLUME).volume();
+    }
+
+    private double getMaxPriceForDay(int day, int productId) {
+        return getSummaryForDay(day, productId, ServerMetrics.Metric.MAX_PRICE).maxPrice();
     }
 
     // ==================== Operações Administrativas ====================
@@ -269,12 +362,23 @@ public class ServerSkeleton implements IAmazUM {
     @Override
     public String endDay() throws IOException {
         boolean success = database.endDay();
+        // Checkpoint da cache, para um reinício não começar com a cache vazia
+        database.saveCache(cache);
+        System.out.println("Consultas calculadas: " + getExecutedQueries()
+                + ", coalescidas: " + getCoalescedQueries());
         return success ? "Day ended successfully." : "Failed to end day.";
     }
 
+    @Override
+    public String getMetrics() throws IOException {
+        return metrics.report();
+    }
+
     @Override
     public String shutdown() throws IOException {
         int lastDay = database.shutdown();
+        database.saveCache(cache);
+        parallel.shutdown();
         return "Server shutdown. Last day saved: " + lastDay;
     }
 
@@ -307,12 +411,20 @@ public class ServerSkeleton implements IAmazUM {
      * 
      * @param productIds    The list of product to filter.
      * @param days          The number of days to look back.
+     * @param currentDay    The current day the window is relative to.
      * 
      * @return The filter sales events map.
      */
-    private Map<Integer, List<FilteredEvents.Event>> collectEvents(List<Integer> productIds, int days) {
+    private Map<Integer, List<FilteredEvents.Event>> collectEvents(List<Integer> productIds, int days, int currentDay) {
+
+        // Os dias fora de memória começam a ser lidos enquanto percorremos os primeiros
+        database.prefetchDays(days, currentDay);
+
+        int from = Math.max(0, currentDay - days);
+        if (parallel.shouldParallelize(currentDay - from, productIds.size())) {
+            return parallel.collectEvents(productIds, from, currentDay, database::getDayData);
+        }
 
-        int currentDay = database.getCurrentDay();
         Map<Integer, List<FilteredEvents.Event>> eventsByProduct = new HashMap<>();
 
         for (int pid : productIds) {
@@ -323,18 +435,14 @@ public class ServerSkeleton implements IAmazUM {
             int day = currentDay - i;
             if (day < 0) break;
 
-            Map<Integer, List<Venda>> dayData = database.getDayData(day);
+            DayView dayData = database.getDayData(day);
 
             for (int pid : productIds) {
-                List<Venda> vendas = dayData.get(pid);
+                ProductSales vendas = dayData.get(pid);
                 if (vendas != null) {
-                    for (Venda v : vendas) {
-                        eventsByProduct.get(pid).add(
-                            new FilteredEvents.Event(
-                                v.getQuantidade(),
-                                v.getPreco()
-                            )
-                        );
+                    List<FilteredEvents.Event> events = eventsByProduct.get(pid);
+                    for (int j = 0, n = vendas.size(); j < n; j++) {
+                        events.add(new FilteredEvents.Event(vendas.quantity(j), vendas.price(j)));
                     }
                 }
             }
@@ -344,34 +452,51 @@ public class ServerSkeleton implements IAmazUM {
     }
 
 
+    /**
+     * Eventos do dia em curso até agora (FilterEvents com days == 0), lidos de
+     * uma fotografia do dia sem bloquear as vendas.
+     */
+    private Map<Integer, List<FilteredEvents.Event>> collectOpenDayEvents(List<Integer> productIds, int currentDay) {
+        DayView today = database.getOpenDaySnapshot(currentDay);
+
+        Map<Integer, List<FilteredEvents.Event>> eventsByProduct = new HashMap<>();
+        for (int pid : productIds) {
+            List<FilteredEvents.Event> events = new ArrayList<>();
+            ProductSales vendas = today.get(pid);
+            if (vendas != null) {
+                for (int j = 0, n = vendas.size(); j < n; j++) {
+                    events.add(new FilteredEvents.Event(vendas.quantity(j), vendas.price(j)));
+                }
+            }
+            eventsByProduct.put(pid, events);
+        }
+        return eventsByProduct;
+    }
+
     /**
      * Helper method to update the client's personal dictionary
-     * This method will check if the client's personal dictionary has the
-     * mapping for the product ids collection and update the personal dictionary
-     * if necessary.
+     * This method checks which of the product ids the client does not know
+     * yet (see UserDictionaries) and sends their names along with the events,
+     * so the client can add them to its personal dictionary. If the server
+     * does not recognise the client's dictionary, the response also tells the
+     * client to replace it.
      * 
-     * @param username The username of the client to update.
-     * @param productIds The collection of product Ids to update the personal dictionary.
+     * @param username The authenticated user to update.
+     * @param events The events about to be sent, by product id.
+     * @param knownCount How many ids the client claims to know.
+     * @param knownDigest The DictionaryDigest of the ids the client knows.
      * 
-     * @return The updated personal dictionary of the client.
+     * @return The response with the events and the dictionary update.
      */
-    private Map<Integer, String> updateDictionary(String username, Collection<Integer> productIds) {
+    private FilteredEvents withDictionaryUpdate(String username, Map<Integer, List<FilteredEvents.Event>> events,
+                                                int knownCount, long knownDigest) {
 
+        UserDictionaries.Update update = database.unknownProductIds(username, events.keySet(), knownCount, knownDigest);
         Map<Integer, String> dictionaryUpdate = new HashMap<>();
-        Map<Integer, String> userDict = database.getUserDictionary(username);
-
-        for (Integer pid : productIds) {
-            if (!userDict.containsKey(pid)) {
-                String productName = database.getProductName(pid);
-                dictionaryUpdate.put(pid, productName);
-            }
+        for (int pid : update.ids()) {
+            dictionaryUpdate.put(pid, database.getProductName(pid));
         }
-
-        if (!dictionaryUpdate.isEmpty()) {
-            database.updateUserDictionary(username, dictionaryUpdate);
-        }
-
-        return dictionaryUpdate;
+        return new FilteredEvents(dictionaryUpdate, update.reset(), events);
     }
    
     @Override
@@ -390,27 +515,40 @@ public class ServerSkeleton implements IAmazUM {
      *
      * @param username  The user requesting the events.
      * @param products  The list of product names to filter.
-     * @param days      The number of days to look back.
+     * @param days      The number of days to look back (0 = today so far).
+     * @param knownCount  How many product ids the client already knows.
+     * @param knownDigest The DictionaryDigest of the product ids the client already knows.
      * @return          The FilteredEvents object.
      */
     @Override
-    public FilteredEvents filterEvents(String username, List<String> products, int days) {
+    public FilteredEvents filterEvents(String username, List<String> products, int days,
+                                       int knownCount, long knownDigest) {
 
         int currentDay = database.getCurrentDay();
-        if (days < 1 || currentDay < 0) {
+        if (days < 0 || currentDay < 0) {
             return new FilteredEvents(Map.of(), Map.of());
         }
 
+        // Produtos nunca vendidos não têm eventos
         List<Integer> productIds = new ArrayList<>();
         for (String p : products) {
-            productIds.add(database.getProductId(p));
+            int pid = database.getProductId(p);
+            if (pid >= 0) {
+                productIds.add(pid);
+            }
+        }
+        if (productIds.isEmpty()) {
+            return new FilteredEvents(Map.of(), Map.of());
         }
 
-        Map<Integer, List<FilteredEvents.Event>> events = collectEvents(productIds, days);
-
-        Map<Integer, String> dictUpdate = updateDictionary(username, events.keySet());
+        // Pedidos idênticos em simultâneo partilham a mesma recolha de eventos
+        EventsKey key = new EventsKey(productIds, days, currentDay);
+        Map<Integer, List<FilteredEvents.Event>> events =
+            eventsFlights.execute(key, () -> days == 0
+                    ? collectOpenDayEvents(productIds, currentDay)
+                    : collectEvents(productIds, days, currentDay));
 
-        return new FilteredEvents(dictUpdate, events);
+        return withDictionaryUpdate(username, events, knownCount, knownDigest);
     }
 
     @Override
@@ -13,8 +13,11 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
 
 import org.Common.IAmazUM;
+import org.Common.SalesSummary;
 import org.Utils.RequestType;
 import org.Utils.TaggedConnection;
 
@@ -33,6 +36,7 @@ class ServerWorker implements Runnable {
     private volatile boolean running;
     private String clientId; // For logging purposes
     private boolean clientAuthenticated;
+    private String username; // Utilizador autenticado nesta ligação
 
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
 
@@ -165,6 +169,9 @@ class ServerWorker implements Runnable {
             return;
         }
 
+        // Deadline absoluto do pedido, contado a partir da receção (0 = sem deadline)
+        long deadline = frame.timeBudget > 0 ? System.currentTimeMillis() + frame.timeBudget : 0;
+
         // Streams para ler os argumentos (Input)
         DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame.data));
 
@@ -173,16 +180,20 @@ class ServerWorker implements Runnable {
                 String username = in.readUTF();
                 String password = in.readUTF();
                 boolean userExists = skeleton.authenticate(username, password);
-                if(userExists)
+                if(userExists) {
                     this.clientAuthenticated = true;
+                    this.username = username;
+                }
                 sendResponse(frame, requestType, (out) -> out.writeBoolean(userExists));
                 break;
             case Register:
                 String regUsername = in.readUTF();
                 String regPassword = in.readUTF();
                 boolean registered = skeleton.register(regUsername, regPassword);
-                if(registered)
+                if(registered) {
                     this.clientAuthenticated = true;
+                    this.username = regUsername;
+                }
                 sendResponse(frame, requestType, (out) -> out.writeBoolean(registered));
                 break;
             /*--Operations that need parallel processing--*/
@@ -192,7 +203,13 @@ class ServerWorker implements Runnable {
                 String productName = in.readUTF();
                 int quantity = in.readInt();
                 double price = in.readDouble();
-                taskPool.submit(
+                // Quantidade 0 daria preço unitário NaN, que os kernels de máximo tratam de forma diferente
+                if (quantity <= 0 || !(price > 0) || Double.isInfinite(price)) {
+                    logError("Invalid sale rejected: quantity=" + quantity + ", price=" + price);
+                    sendResponse(frame, requestType, (out) -> out.writeBoolean(false));
+                    break;
+                }
+                submitTask(frame, deadline,
                     () -> skeleton.addSale(productName, quantity, price),
                     (result) -> sendResponse(frame, requestType, (out) -> out.writeBoolean(result))
                 );
@@ -202,7 +219,7 @@ class ServerWorker implements Runnable {
 
                 String prodName = in.readUTF();
                 int days = in.readInt();
-                taskPool.submit(
+                submitTask(frame, deadline,
                     () -> skeleton.getSalesAveragePrice(prodName, days),
                     (result) -> sendResponse(frame, requestType, (out) -> out.writeDouble(result))
                 );
@@ -212,7 +229,7 @@ class ServerWorker implements Runnable {
 
                 String productNameMax = in.readUTF();
                 int daysMax = in.readInt();
-                taskPool.submit(
+                submitTask(frame, deadline,
                     () -> skeleton.getSalesMaxPrice(productNameMax, daysMax),
                     (result) -> sendResponse(frame, requestType, (out) -> out.writeDouble(result))
                 );
@@ -222,7 +239,7 @@ class ServerWorker implements Runnable {
 
                 String productNameQty = in.readUTF();
                 int daysQty = in.readInt();
-                taskPool.submit(
+                submitTask(frame, deadline,
                     () -> skeleton.getSalesQuantity(productNameQty, daysQty),
                     (result) -> sendResponse(frame, requestType, (out) -> out.writeInt(result))
                 );
@@ -232,15 +249,30 @@ class ServerWorker implements Runnable {
 
                 String productNameVol = in.readUTF();
                 int daysVol = in.readInt();
-                taskPool.submit(
+                submitTask(frame, deadline,
                     () -> skeleton.getSalesVolume(productNameVol, daysVol),
                     (result) -> sendResponse(frame, requestType, (out) -> out.writeDouble(result))
                 );
                 break;
+            case TodaySummary:
+                requireAuth();
+
+                // O(1): responde diretamente, sem passar pela TaskPool
+                String productNameToday = in.readUTF();
+                SalesSummary today = skeleton.getTodaySummary(productNameToday);
+                sendResponse(frame, requestType, (out) -> today.serialize(out));
+                break;
+            case Metrics:
+                requireAuth();
+
+                // Só lê contadores: responde diretamente, sem passar pela TaskPool
+                String report = skeleton.getMetrics();
+                sendResponse(frame, requestType, (out) -> out.writeUTF(report));
+                break;
             case EndDay:
                 requireAuth();
 
-                taskPool.submit(
+                submitTask(frame, deadline,
                     () -> {
                         skeleton.endDay();
                         return true;
@@ -301,9 +333,12 @@ class ServerWorker implements Runnable {
                     products.add(in.readUTF());
                 }
                 int daysAgo = in.readInt();
+                int knownCount = in.readInt();
+                long knownDigest = in.readLong();
+                String user = this.username;
 
-                taskPool.submit(
-                    () -> skeleton.filterEvents(this.clientId, products, daysAgo),
+                submitTask(frame, deadline,
+                    () -> skeleton.filterEvents(user, products, daysAgo, knownCount, knownDigest),
                     (result) -> sendResponse(frame, requestType,
                         (out) -> result.serialize(out))
                 );
@@ -332,6 +367,15 @@ class ServerWorker implements Runnable {
         }
     }
     
+    /**
+     * Submete uma tarefa à TaskPool respeitando o deadline do pedido.
+     * Se expirar antes de ser executada, o cliente recebe uma resposta Timeout.
+     */
+    private <T> void submitTask(TaggedConnection.Frame frame, long deadline, Callable<T> task, Consumer<T> handler) {
+        taskPool.submit(task, handler, deadline,
+            () -> sendResponse(frame, RequestType.Timeout, (out) -> {}));
+    }
+
     /**
      * Cleanup resources when worker terminates.
      */
@@ -0,0 +1,127 @@
+package org.Server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Coalescência de pedidos idênticos concorrentes ("single-flight").
+ *
+ * A primeira thread a pedir uma chave executa o cálculo; as threads que pedirem
+ * a mesma chave enquanto este está em curso esperam e recebem o mesmo resultado.
+ * Terminado o cálculo a chave é removida, pelo que pedidos posteriores recalculam.
+ *
+ * @param <K> Tipo da chave (tem de implementar equals/hashCode)
+ * @param <V> Tipo do resultado partilhado
+ */
+public class SingleFlight<K, V> {
+
+    // Cálculo em curso para uma chave
+    private static class Call<V> {
+        final Condition finished;
+        boolean done = false;
+        V value;
+        Throwable error;
+
+        Call(Condition finished) {
+            this.finished = finished;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, Call<V>> inFlight = new HashMap<>();
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Executa o cálculo para a chave, ou junta-se a um cálculo idêntico já em curso.
+     *
+     * @param key A chave que identifica o pedido
+     * @param computation O cálculo a executar se não houver nenhum em curso
+     * @return O resultado (partilhado entre todos os pedidos coalescidos)
+     */
+    public V execute(K key, Supplier<V> computation) {
+        Call<V> call;
+
+        lock.lock();
+        try {
+            call = inFlight.get(key);
+            if (call != null) {
+                // Já existe um cálculo igual: espera pelo resultado dele
+                coalesced.incrementAndGet();
+                while (!call.done) {
+                    call.finished.awaitUninterruptibly();
+                }
+                if (call.error != null) {
+                    throw rethrow(call.error);
+                }
+                return call.value;
+            }
+
+            call = new Call<>(lock.newCondition());
+            inFlight.put(key, call);
+        } finally {
+            lock.unlock();
+        }
+
+        // Somos o líder: calcula fora do lock
+        executed.incrementAndGet();
+        V value = null;
+        Throwable error = null;
+        try {
+            value = computation.get();
+        } catch (Throwable t) {
+            // Inclui Errors (ex.: OutOfMemoryError a carregar um dia): os que
+            // esperam têm de os receber também, não um valor null
+            error = t;
+        } finally {
+            lock.lock();
+            try {
+                call.value = value;
+                call.error = error;
+                call.done = true;
+                inFlight.remove(key);
+                call.finished.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (error != null) {
+            throw rethrow(error);
+        }
+        return value;
+    }
+
+    /**
+     * Relança o erro do cálculo: RuntimeExceptions e Errors tal como estão,
+     * qualquer outro embrulhado numa RuntimeException.
+     */
+    private static RuntimeException rethrow(Throwable error) {
+        if (error instanceof RuntimeException e) {
+            throw e;
+        }
+        if (error instanceof Error e) {
+            throw e;
+        }
+        throw new RuntimeException(error);
+    }
+
+    /**
+     * @return Número de pedidos que foram efetivamente calculados
+     */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * @return Número de pedidos que reaproveitaram um cálculo em curso
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+}
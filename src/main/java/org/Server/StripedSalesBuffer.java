@@ -0,0 +1,85 @@
+package org.Server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.Common.SalesSummary;
+
+/**
+ * Vendas do dia em curso com exclusão mútua por produto.
+ *
+ * Cada produto tem a sua coluna e o seu lock, pelo que vendas de produtos
+ * diferentes nunca se bloqueiam umas às outras. A criação de colunas novas
+ * é feita pelo ConcurrentHashMap, sem lock global. As colunas publicam cada
+ * venda (PublishedColumn), pelo que as consultas ao dia em curso as leem
+ * sem o lock do produto. Os totais por produto são mantidos à parte em
+ * acumuladores lock-free (RunningAggregates).
+ */
+class StripedSalesBuffer implements SalesBuffer {
+
+    // Coluna de um produto juntamente com o lock que protege os escritores
+    private static class LockedColumn {
+        final ReentrantLock lock = new ReentrantLock();
+        final PublishedColumn column = new PublishedColumn();
+    }
+
+    private final ConcurrentHashMap<Integer, LockedColumn> columns = new ConcurrentHashMap<>();
+    private final RunningAggregates totals = new RunningAggregates();
+
+    /**
+     * Regista uma venda; só bloqueia outras vendas do mesmo produto.
+     */
+    @Override
+    public void add(int productId, int quantidade, double preco) {
+        LockedColumn entry = columns.computeIfAbsent(productId, k -> new LockedColumn());
+        entry.lock.lock();
+        try {
+            entry.column.add(quantidade, preco);
+        } finally {
+            entry.lock.unlock();
+        }
+        totals.record(productId, quantidade, preco);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return columns.isEmpty();
+    }
+
+    /**
+     * Devolve as vendas acumuladas como um DaySales que partilha as colunas.
+     * Só pode ser chamado com os escritores excluídos (barreira de fim de dia).
+     */
+    @Override
+    public DaySales snapshot() {
+        Map<Integer, SalesColumn> result = new HashMap<>(columns.size() * 2);
+        for (Map.Entry<Integer, LockedColumn> entry : columns.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().column.column());
+        }
+        return new DaySales(result);
+    }
+
+    @Override
+    public OpenDaySnapshot readSnapshot() {
+        Map<Integer, ProductSales> result = new HashMap<>(columns.size() * 2);
+        for (Map.Entry<Integer, LockedColumn> entry : columns.entrySet()) {
+            ColumnSnapshot sales = entry.getValue().column.snapshot();
+            if (sales.size() > 0) {
+                result.put(entry.getKey(), sales);
+            }
+        }
+        return new OpenDaySnapshot(result);
+    }
+
+    @Override
+    public SalesSummary summary(int productId) {
+        return totals.get(productId);
+    }
+
+    @Override
+    public DaySummary toDaySummary() {
+        return totals.toDaySummary();
+    }
+}
@@ -5,6 +5,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
@@ -22,6 +23,7 @@ public class TaskPool {
     private final ReentrantLock lock = new ReentrantLock();
     private final Condition notEmpty = lock.newCondition();
     private volatile boolean shutdown = false;
+    private final AtomicLong expiredTasks = new AtomicLong();
     
     private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
 
@@ -67,6 +69,20 @@ public class TaskPool {
      * @param responseHandler O handler a chamar com o resultado (ou null em caso de erro)
      */
     public <T> void submit(Callable<T> task, Consumer<T> responseHandler) {
+        submit(task, responseHandler, 0, null);
+    }
+
+    /**
+     * Submete uma tarefa com deadline.
+     * Se o deadline já tiver passado quando a tarefa sai da fila, a tarefa não
+     * é executada e é chamado o expiredHandler (o cliente já desistiu da resposta).
+     * 
+     * @param task O Callable a executar
+     * @param responseHandler O handler a chamar com o resultado (ou null em caso de erro)
+     * @param deadline Instante limite em ms (System.currentTimeMillis), 0 = sem deadline
+     * @param expiredHandler O handler a chamar se a tarefa expirar na fila
+     */
+    public <T> void submit(Callable<T> task, Consumer<T> responseHandler, long deadline, Runnable expiredHandler) {
         lock.lock();
         try {
             if (shutdown) {
@@ -75,6 +91,14 @@ public class TaskPool {
             }
             
             taskQueue.add(() -> {
+                if (deadline > 0 && System.currentTimeMillis() > deadline) {
+                    expiredTasks.incrementAndGet();
+                    if (expiredHandler != null) {
+                        expiredHandler.run();
+                    }
+                    return;
+                }
+
                 T result = null;
                 try {
                     result = task.call();
@@ -102,6 +126,13 @@ public class TaskPool {
         }
     }
 
+    /**
+     * @return Número de tarefas descartadas por terem expirado na fila
+     */
+    public long getExpiredTasks() {
+        return expiredTasks.get();
+    }
+
     /**
      * Loop principal de cada thread worker.
      * Protegido contra exceções para garantir que threads não morrem silenciosamente.
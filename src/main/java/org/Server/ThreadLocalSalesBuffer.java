@@ -0,0 +1,208 @@
+package org.Server;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.Common.SalesSummary;
+
+/**
+ * Vendas do dia em curso com um buffer privado por thread.
+ *
+ * Cada thread de ingestão (tipicamente as threads da TaskPool) escreve nas
+ * suas próprias colunas e nos seus próprios totais por produto, sem qualquer
+ * escrita partilhada. No fim do dia os buffers de todas as threads são
+ * fundidos num único DaySales e num único DaySummary.
+ *
+ * Cada thread é a única escritora das suas colunas, que publicam cada venda
+ * (PublishedColumn), e dos seus totais, publicados como um SalesSummary
+ * imutável; as consultas ao dia em curso leem-nos sem sincronizar com as
+ * threads de ingestão e juntam os de todas as threads.
+ *
+ * Há um único ThreadLocal para todos os dias, com uma referência fraca para o
+ * buffer da thread: o dia a que pertence (owner) serve de época, e um buffer
+ * de um dia já fechado é substituído na primeira venda do dia seguinte. Até
+ * lá a thread não o mantém vivo, pelo que um dia fechado pode ser libertado
+ * mesmo que algumas threads da pool não voltem a registar vendas.
+ */
+class ThreadLocalSalesBuffer implements SalesBuffer {
+
+    // Vendas e totais de um produto numa thread
+    private static class LocalProduct {
+        final PublishedColumn column = new PublishedColumn();
+        volatile SalesSummary totals = SalesSummary.EMPTY;
+
+        void add(int quantidade, double preco) {
+            column.add(quantidade, preco);
+            SalesSummary t = totals;
+            totals = new SalesSummary(t.count() + 1, t.quantity() + quantidade, t.volume() + preco,
+                                      Math.max(t.maxPrice(), preco / quantidade));
+        }
+    }
+
+    // Colunas de uma thread; o map é concorrente só para as leituras de outras threads
+    private static class Buffer {
+        final ThreadLocalSalesBuffer owner;
+        final Map<Integer, LocalProduct> products = new ConcurrentHashMap<>();
+
+        Buffer(ThreadLocalSalesBuffer owner) {
+            this.owner = owner;
+        }
+    }
+
+    // Buffer atual de cada thread, de qualquer dia (ver owner)
+    private static final ThreadLocal<WeakReference<Buffer>> LOCAL = new ThreadLocal<>();
+
+    // Todos os buffers criados, para a fusão no fim do dia
+    private final List<Buffer> buffers = new ArrayList<>();
+    private final ReentrantLock registryLock = new ReentrantLock();
+
+    /**
+     * @return O buffer da thread atual neste dia, criado na primeira venda
+     */
+    private Buffer local() {
+        WeakReference<Buffer> ref = LOCAL.get();
+        Buffer buffer = ref == null ? null : ref.get();
+        if (buffer == null || buffer.owner != this) {
+            buffer = register();
+            LOCAL.set(new WeakReference<>(buffer));
+        }
+        return buffer;
+    }
+
+    /**
+     * Cria e regista o buffer de uma thread (uma vez por thread e por dia).
+     */
+    private Buffer register() {
+        Buffer buffer = new Buffer(this);
+        registryLock.lock();
+        try {
+            buffers.add(buffer);
+        } finally {
+            registryLock.unlock();
+        }
+        return buffer;
+    }
+
+    private List<Buffer> currentBuffers() {
+        registryLock.lock();
+        try {
+            return new ArrayList<>(buffers);
+        } finally {
+            registryLock.unlock();
+        }
+    }
+
+    @Override
+    public void add(int productId, int quantidade, double preco) {
+        local().products.computeIfAbsent(productId, k -> new LocalProduct()).add(quantidade, preco);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Buffer buffer : currentBuffers()) {
+            if (!buffer.products.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Funde os buffers de todas as threads num único dia.
+     * Só pode ser chamado com os escritores excluídos (barreira de fim de dia).
+     */
+    @Override
+    public DaySales snapshot() {
+        List<Buffer> current = currentBuffers();
+        if (current.size() == 1) {
+            return new DaySales(columns(current.get(0)));
+        }
+        DaySales merged = new DaySales();
+        for (Buffer buffer : current) {
+            merged.addAll(new DaySales(columns(buffer)));
+        }
+        return merged;
+    }
+
+    private static Map<Integer, SalesColumn> columns(Buffer buffer) {
+        Map<Integer, SalesColumn> columns = new HashMap<>();
+        for (Map.Entry<Integer, LocalProduct> entry : buffer.products.entrySet()) {
+            columns.put(entry.getKey(), entry.getValue().column.column());
+        }
+        return columns;
+    }
+
+    /**
+     * Junta as vendas publicadas de todas as threads. Um produto vendido por
+     * uma só thread partilha a coluna dela; senão as fatias são copiadas.
+     */
+    @Override
+    public OpenDaySnapshot readSnapshot() {
+        Map<Integer, ProductSales> result = new HashMap<>();
+        for (Buffer buffer : currentBuffers()) {
+            for (Map.Entry<Integer, LocalProduct> entry : buffer.products.entrySet()) {
+                ColumnSnapshot sales = entry.getValue().column.snapshot();
+                if (sales.size() == 0) {
+                    continue;
+                }
+                ProductSales previous = result.get(entry.getKey());
+                if (previous == null) {
+                    result.put(entry.getKey(), sales);
+                    continue;
+                }
+                SalesColumn merged;
+                if (previous instanceof SalesColumn column) {
+                    merged = column;
+                } else {
+                    merged = new SalesColumn(previous.size() + sales.size());
+                    append(merged, previous);
+                    result.put(entry.getKey(), merged);
+                }
+                append(merged, sales);
+            }
+        }
+        return new OpenDaySnapshot(result);
+    }
+
+    private static void append(SalesColumn target, ProductSales sales) {
+        for (int i = 0, n = sales.size(); i < n; i++) {
+            target.add(sales.quantity(i), sales.price(i));
+        }
+    }
+
+    /**
+     * Soma os totais do produto em todas as threads, O(threads).
+     */
+    @Override
+    public SalesSummary summary(int productId) {
+        SalesSummary result = SalesSummary.EMPTY;
+        for (Buffer buffer : currentBuffers()) {
+            LocalProduct product = buffer.products.get(productId);
+            if (product != null) {
+                result = merge(result, product.totals);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public DaySummary toDaySummary() {
+        Map<Integer, SalesSummary> products = new HashMap<>();
+        for (Buffer buffer : currentBuffers()) {
+            for (Map.Entry<Integer, LocalProduct> entry : buffer.products.entrySet()) {
+                products.merge(entry.getKey(), entry.getValue().totals, ThreadLocalSalesBuffer::merge);
+            }
+        }
+        return new DaySummary(products);
+    }
+
+    private static SalesSummary merge(SalesSummary a, SalesSummary b) {
+        return new SalesSummary(a.count() + b.count(), a.quantity() + b.quantity(),
+                                a.volume() + b.volume(), Math.max(a.maxPrice(), b.maxPrice()));
+    }
+}
@@ -0,0 +1,151 @@
+package org.Server;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.Common.DictionaryDigest;
+
+/**
+ * Dicionários pessoais do FilterEvents: que ids de produtos cada utilizador
+ * autenticado já recebeu com o respetivo nome.
+ *
+ * Por conjunto conhecido guarda-se só um BitSet de ids (os nomes estão no
+ * Dictionary global), a contagem e o resumo (DictionaryDigest) desse conjunto.
+ * Cada pedido traz a contagem e o resumo do lado do cliente e usa o conjunto
+ * que coincide com eles, pelo que um cliente que se volta a ligar com o
+ * dicionário intacto (o cliente guarda-o em disco por utilizador) retoma-o sem
+ * receber nada de novo. Se nenhum coincidir (servidor reiniciado, estado
+ * esquecido) começa um conjunto vazio, os nomes voltam a ser enviados e a
+ * resposta diz ao cliente para substituir o seu dicionário (reset), para que
+ * os dois lados voltem a coincidir. Um utilizador pode ter algumas sessões com
+ * dicionários diferentes (até MAX_SETS_PER_USER) sem que se anulem entre si.
+ *
+ * Utilizadores sem pedidos há mais de idleTimeoutMs são esquecidos.
+ */
+public class UserDictionaries {
+
+    // Intervalo mínimo entre duas passagens de limpeza
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    // Dicionários diferentes mantidos por utilizador (sessões em simultâneo)
+    private static final int MAX_SETS_PER_USER = 4;
+
+    /**
+     * Resultado de um pedido: os ids a enviar e se o cliente tem de descartar
+     * o dicionário que tinha (o servidor não o reconheceu e recomeçou).
+     */
+    public record Update(boolean reset, List<Integer> ids) {
+    }
+
+    private static class Known {
+        final BitSet ids = new BitSet();
+        int count;
+        long digest;
+        long lastUse;
+    }
+
+    private static class UserState {
+        final List<Known> sets = new ArrayList<>(1);
+        volatile long lastAccess;
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * O conjunto que coincide com o que o cliente diz conhecer, ou um novo
+         * (a substituir o menos usado recentemente se já houver demasiados).
+         * Um conjunto novo começa com count 0.
+         */
+        Known match(int count, long digest, long now) {
+            Known oldest = null;
+            for (Known known : sets) {
+                if (known.count == count && known.digest == digest) {
+                    known.lastUse = now;
+                    return known;
+                }
+                if (oldest == null || known.lastUse < oldest.lastUse) {
+                    oldest = known;
+                }
+            }
+            if (sets.size() >= MAX_SETS_PER_USER) {
+                sets.remove(oldest);
+            }
+            Known known = new Known();
+            known.lastUse = now;
+            sets.add(known);
+            return known;
+        }
+    }
+
+    private final Map<String, UserState> users = new ConcurrentHashMap<>();
+    private final long idleTimeoutMs;
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param idleTimeoutMs Tempo sem pedidos ao fim do qual o estado de um utilizador é descartado
+     */
+    public UserDictionaries(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.nextSweep = new AtomicLong(System.currentTimeMillis() + SWEEP_INTERVAL_MS);
+    }
+
+    /**
+     * Devolve os ids que o utilizador ainda não conhece e marca-os como conhecidos.
+     *
+     * @param username Utilizador autenticado
+     * @param productIds Ids presentes na resposta
+     * @param clientCount Número de ids que o cliente diz conhecer
+     * @param clientDigest Resumo dos ids que o cliente diz conhecer
+     * @return Ids cujo nome tem de ser enviado, e se o cliente tem de recomeçar o dicionário
+     */
+    public Update unknownIds(String username, Collection<Integer> productIds, int clientCount, long clientDigest) {
+        long now = System.currentTimeMillis();
+        sweepIfDue(now);
+
+        UserState state = users.computeIfAbsent(username, u -> new UserState());
+        state.lastAccess = now;
+
+        List<Integer> missing = new ArrayList<>();
+        boolean reset;
+        state.lock.lock();
+        try {
+            Known known = state.match(clientCount, clientDigest, now);
+            // Conjunto vazio para um cliente que diz conhecer ids: não o reconhecemos
+            reset = known.count == 0 && (clientCount != 0 || clientDigest != 0);
+            for (int pid : productIds) {
+                if (!known.ids.get(pid)) {
+                    known.ids.set(pid);
+                    known.count++;
+                    known.digest += DictionaryDigest.mix(pid);
+                    missing.add(pid);
+                }
+            }
+        } finally {
+            state.lock.unlock();
+        }
+        return new Update(reset, missing);
+    }
+
+    /**
+     * @return Número de utilizadores com estado em memória
+     */
+    public int size() {
+        return users.size();
+    }
+
+    private void sweepIfDue(long now) {
+        long due = nextSweep.get();
+        if (now < due || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_MS)) {
+            return;
+        }
+        for (Map.Entry<String, UserState> entry : users.entrySet()) {
+            if (now - entry.getValue().lastAccess > idleTimeoutMs) {
+                users.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
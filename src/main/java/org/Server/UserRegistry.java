@@ -0,0 +1,85 @@
+package org.Server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registo de utilizadores concorrente.
+ *
+ * O login é uma leitura sem locks de um ConcurrentHashMap, pelo que muitos
+ * logins em simultâneo escalam com o número de cores. O registo reserva o
+ * nome e só publica o utilizador depois de o lote do log em disco (UsersLog,
+ * com group commit) ter feito sync: um utilizador com quem já se pode fazer
+ * login sobrevive sempre a uma falha do servidor. Se o lote falhar, o registo
+ * falha e o nome fica livre.
+ */
+public class UserRegistry {
+
+    private final ConcurrentHashMap<String, String> users;
+    private final UsersLog log;
+
+    // Nomes com registo a caminho do disco, ainda invisíveis para o login
+    private final Set<String> reserved = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param users Os utilizadores carregados do disco (snapshot + log)
+     * @param log O log onde são acrescentados os novos registos (null = sem log)
+     */
+    public UserRegistry(Map<String, String> users, UsersLog log) {
+        this.users = new ConcurrentHashMap<>(users);
+        this.log = log;
+    }
+
+    public boolean checkCredentials(String username, String password) {
+        String storedPassword = users.get(username);
+        return storedPassword != null && storedPassword.equals(password);
+    }
+
+    /**
+     * Regista um utilizador novo, esperando que fique no log em disco.
+     *
+     * @return false se o nome já existir (ou estiver a ser registado) ou se a
+     *         escrita no log falhar
+     */
+    public boolean register(String username, String password) {
+        // Reserva antes de verificar: quem publica só liberta a reserva depois
+        if (!reserved.add(username)) {
+            return false;
+        }
+        try {
+            if (users.containsKey(username)) {
+                return false; // User already exists
+            }
+            if (log != null && !log.append(username, password)) {
+                System.err.println("Registo de " + username + " falhou: o log de utilizadores não foi gravado");
+                return false;
+            }
+            users.put(username, password);
+            return true;
+        } finally {
+            reserved.remove(username);
+        }
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    /**
+     * @return Cópia de todos os utilizadores, para o snapshot em disco
+     */
+    public Map<String, String> snapshot() {
+        return new HashMap<>(users);
+    }
+
+    /**
+     * Grava os registos pendentes e fecha o log.
+     */
+    public void close() {
+        if (log != null) {
+            log.close();
+        }
+    }
+}
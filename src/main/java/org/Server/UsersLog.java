@@ -0,0 +1,165 @@
+package org.Server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Log append-only de registos de utilizadores, com group commit.
+ *
+ * Cada registo é posto numa fila e a thread que regista espera que fique em
+ * disco. Uma thread de escrita em background junta todos os registos pendentes
+ * num só lote: escreve-os, faz flush e sync do ficheiro uma única vez e acorda
+ * todos os que estavam à espera. Com muitos registos em simultâneo o custo do
+ * sync é partilhado pelo lote. Um lote que falha é cortado do ficheiro, para
+ * que um registo recusado não reapareça ao reler o log.
+ *
+ * Formato de cada registo: UTF username, UTF password.
+ */
+public class UsersLog {
+
+    private final FileOutputStream file;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasWork = lock.newCondition();
+    private final Condition committed = lock.newCondition();
+
+    private List<String[]> pending = new ArrayList<>();
+    private long appendedSeq = 0;   // último registo posto na fila
+    private long committedSeq = 0;  // último registo em disco (ou falhado)
+    private long failedUpTo = 0;    // registos até aqui cujo lote falhou
+    private boolean closed = false;
+
+    private final Thread writer;
+
+    /**
+     * Abre (ou cria) o log em modo append e inicia a thread de escrita.
+     */
+    UsersLog(String path) throws IOException {
+        this.file = new FileOutputStream(path, true);
+        this.writer = new Thread(this::writerLoop, "UsersLogWriter");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Acrescenta um registo e espera que fique em disco.
+     *
+     * @return true se o registo foi gravado, false se a escrita falhou
+     */
+    public boolean append(String username, String password) {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            pending.add(new String[] { username, password });
+            long seq = ++appendedSeq;
+            hasWork.signal();
+
+            while (committedSeq < seq) {
+                committed.awaitUninterruptibly();
+            }
+            return seq > failedUpTo;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writerLoop() {
+        while (true) {
+            List<String[]> batch;
+            long batchEnd;
+
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    hasWork.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return; // fechado e sem nada pendente
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                batchEnd = appendedSeq;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean ok = writeBatch(batch);
+
+            lock.lock();
+            try {
+                committedSeq = batchEnd;
+                if (!ok) {
+                    failedUpTo = batchEnd;
+                }
+                committed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Escreve um lote de uma só vez e faz sync. Se falhar, corta o ficheiro
+     * para o tamanho anterior ao lote.
+     *
+     * @return true se o lote ficou em disco
+     */
+    private boolean writeBatch(List<String[]> batch) {
+        long start = -1;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (String[] record : batch) {
+                out.writeUTF(record[0]);
+                out.writeUTF(record[1]);
+            }
+            start = file.getChannel().size();
+            file.write(bytes.toByteArray());
+            file.getFD().sync();
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error writing users log: " + e.getMessage());
+            if (start >= 0) {
+                try {
+                    file.getChannel().truncate(start);
+                } catch (IOException t) {
+                    System.err.println("Error truncating users log: " + t.getMessage());
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Grava o que estiver pendente, termina a thread de escrita e fecha o ficheiro.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            hasWork.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("Error closing users log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.Server;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels de agregação SIMD com a Vector API (jdk.incubator.vector).
+ *
+ * Só é carregada se o módulo estiver presente no arranque
+ * (--add-modules jdk.incubator.vector); caso contrário usa-se ScalarKernels.
+ * As quantidades são convertidas para long (somas) ou double (divisões)
+ * com o mesmo número de lanes que o vetor de destino. O resto que não
+ * enche um vetor é tratado de forma escalar.
+ *
+ * A soma dos volumes é feita por lanes, pelo que pode diferir da soma
+ * escalar nos últimos bits (ordem diferente das adições em vírgula flutuante).
+ */
+public class VectorKernels implements AggregationKernels {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    // Ints com tantas lanes como os vetores de double/long (metade dos bits)
+    private static final VectorSpecies<Integer> INTS_FOR_DOUBLES =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    private static final VectorSpecies<Integer> INTS_FOR_LONGS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+
+    @Override
+    public long sumQuantity(int[] q, int n) {
+        LongVector acc = LongVector.zero(LONGS);
+        int step = LONGS.length();
+        int i = 0;
+        for (int bound = n - n % step; i < bound; i += step) {
+            IntVector quantities = IntVector.fromArray(INTS_FOR_LONGS, q, i);
+            acc = acc.add((LongVector) quantities.convertShape(VectorOperators.I2L, LONGS, 0));
+        }
+        long total = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            total += q[i];
+        }
+        return total;
+    }
+
+    @Override
+    public double sumVolume(double[] p, int n) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(n); i < bound; i += DOUBLES.length()) {
+            acc = acc.add(DoubleVector.fromArray(DOUBLES, p, i));
+        }
+        double total = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            total += p[i];
+        }
+        return total;
+    }
+
+    @Override
+    public double maxUnitPrice(int[] q, double[] p, int n) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(n); i < bound; i += DOUBLES.length()) {
+            DoubleVector prices = DoubleVector.fromArray(DOUBLES, p, i);
+            DoubleVector quantities = (DoubleVector) IntVector.fromArray(INTS_FOR_DOUBLES, q, i)
+                    .convertShape(VectorOperators.I2D, DOUBLES, 0);
+            acc = acc.max(prices.div(quantities));
+        }
+        double max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < n; i++) {
+            double unitPrice = p[i] / q[i];
+            if (unitPrice > max) {
+                max = unitPrice;
+            }
+        }
+        return max;
+    }
+}
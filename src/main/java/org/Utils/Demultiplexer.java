@@ -1,8 +1,12 @@
 package org.Utils;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -10,8 +14,9 @@ import java.util.concurrent.locks.ReentrantLock;
 public class Demultiplexer implements AutoCloseable {
     
     private final TaggedConnection conn;
-    private Map<Integer, byte[]> responses; // Guarda respostas recebidas
+    private Map<Integer, TaggedConnection.Frame> responses; // Guarda respostas recebidas
     private Map<Integer, Condition> conditions; // Guarda conditions para threads à espera
+    private Set<Integer> abandoned; // Tags cujo pedido expirou do lado do cliente
     private Lock lock = new ReentrantLock();
     private Thread receiverThread;
     private volatile boolean running = true;
@@ -20,6 +25,7 @@ public class Demultiplexer implements AutoCloseable {
         this.conn = conn;
         this.responses = new HashMap<>();
         this.conditions = new HashMap<>();
+        this.abandoned = new HashSet<>();
     }
 
 // Em org/Demultiplexer.java
@@ -36,7 +42,10 @@ public class Demultiplexer implements AutoCloseable {
                         // Ignora mensagens se já estivermos a fechar
                         if (!running) return;
 
-                        responses.put(frame.tag, frame.data);
+                        // Resposta tardia a um pedido que já desistiu: descarta
+                        if (abandoned.remove(frame.tag)) continue;
+
+                        responses.put(frame.tag, frame);
                         Condition condition = conditions.get(frame.tag);
                         if (condition != null) {
                             condition.signal();
@@ -71,23 +80,49 @@ public class Demultiplexer implements AutoCloseable {
         send(new TaggedConnection.Frame(tag, requestType, data));
     }
 
+    public void send(int tag, short requestType, int timeBudget, byte[] data) throws IOException {
+        send(new TaggedConnection.Frame(tag, requestType, timeBudget, data));
+    }
+
 
     public byte[] receive(int tag) throws IOException, InterruptedException {
+        return receiveFrame(tag, 0).data;
+    }
+
+    /**
+     * Espera pela resposta a um pedido, no máximo timeoutMillis.
+     * Em caso de timeout a entrada é libertada e uma resposta tardia é descartada.
+     *
+     * @param tag A tag do pedido
+     * @param timeoutMillis Tempo máximo de espera em ms (0 = sem limite)
+     * @return A frame de resposta
+     * @throws SocketTimeoutException se a resposta não chegar a tempo
+     */
+    public TaggedConnection.Frame receiveFrame(int tag, long timeoutMillis) throws IOException, InterruptedException {
         lock.lock();
         try {
             // Fast-path: resposta já chegou
-            byte[] data = responses.remove(tag);
-            if (data != null) return data;
+            TaggedConnection.Frame frame = responses.remove(tag);
+            if (frame != null) return frame;
             
             // Regista a espera
             Condition condition = lock.newCondition();
             conditions.put(tag, condition);
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
             
             try {
                 // Ciclo de espera robusto:
                 // Continua a dormir SÓ SE não houver resposta E o sistema ainda estiver a correr
                 while (!responses.containsKey(tag) && running) {
-                    condition.await();
+                    if (timeoutMillis <= 0) {
+                        condition.await();
+                    } else {
+                        if (remaining <= 0) {
+                            abandoned.add(tag);
+                            throw new SocketTimeoutException("Sem resposta ao pedido " + tag + " após " + timeoutMillis + "ms");
+                        }
+                        remaining = condition.awaitNanos(remaining);
+                    }
                 }
                 
                 // Se acordou e o sistema fechou (running == false), lança erro
@@ -17,6 +17,9 @@ public enum RequestType {
     SimultaneousSales((short)10),
     ConsecutiveSales((short)11),
     FilterEvents((short)12),
+    Timeout((short)13), // resposta: o pedido expirou antes de ser executado
+    TodaySummary((short)14),
+    Metrics((short)15), // administração: métricas da cache e do armazenamento
     Confirmation((short)99); // ou outro valor não usado
 
     private final short value;
@@ -14,11 +14,18 @@ public class TaggedConnection implements AutoCloseable {
     public static class Frame {
         public final int tag;
         public final short requestType;
+        /* Orçamento de tempo do pedido em ms (0 = sem deadline) */
+        public final int timeBudget;
         public final byte[] data;
 
         public Frame(int tag, short requestType, byte[] data) {
+            this(tag, requestType, 0, data);
+        }
+
+        public Frame(int tag, short requestType, int timeBudget, byte[] data) {
             this.tag = tag;
             this.requestType = requestType;
+            this.timeBudget = timeBudget;
             this.data = data;
         }
     }
@@ -33,6 +40,7 @@ public class TaggedConnection implements AutoCloseable {
         try {
             out.writeInt(frame.tag);
             out.writeShort(frame.requestType);
+            out.writeInt(frame.timeBudget);
             out.writeInt(frame.data.length);
             out.write(frame.data);
             out.flush();
@@ -50,10 +58,11 @@ public class TaggedConnection implements AutoCloseable {
         try {
             int tag = in.readInt();
             short requestType = in.readShort();
+            int timeBudget = in.readInt();
             int length = in.readInt();
             byte[] data = new byte[length];
             in.readFully(data);
-            return new Frame(tag, requestType, data);
+            return new Frame(tag, requestType, timeBudget, data);
         } finally {
             readLock.unlock();
         }